@@ -1,9 +1,11 @@
 package bm;
 
-import ixm.DocumentInfo;
-import ixm.DocumentList;
 import ixm.IndexHandle;
+import ixm.IndexReader;
+import ixm.PostingIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Stack;
 
@@ -25,10 +27,27 @@ public class BooleanModelManager {
 
     /**
      *
-     * @param query User's query (must be a logical expresion).
+     * @param query User's query (must be a logical expresion). A term that ends with "*"
+     *              matches every word that starts with the rest of the term.
      * @return A list of the query's results.
      */
     public ArrayList<String> excecuteQuery(String query) {
+        // the index does not change while the query runs
+        iHandle.BeginRead();
+        try {
+            return Evaluate(query);
+        } finally {
+            iHandle.EndRead();
+        }
+    }
+
+    /**
+     * Evaluates a query, while the index does not change.
+     *
+     * @param query User's query (must be a logical expresion).
+     * @return A list of the query's results.
+     */
+    private ArrayList<String> Evaluate(String query) {
         query = query.trim();
         query = InfixToPostfix(query);
         String[] keywords = query.split(" ");
@@ -37,36 +56,163 @@ public class BooleanModelManager {
         for (int i = 0; i < keywords.length; i++) {
             
             if (keywords[i].equals("NOT")) {
-                ArrayList<String> temp = (ArrayList<String>) stack.pop();
+                ArrayList<String> temp = Documents(stack.pop());
                 stack.push(Not(temp));
 
                 continue;
             }
             if (keywords[i].equals("AND")) {
-                ArrayList<String> temp1 = (ArrayList<String>) stack.pop();
-                ArrayList<String> temp2 = (ArrayList<String>) stack.pop();
+                Object temp1 = stack.pop();
+                Object temp2 = stack.pop();
                 stack.push(And(temp1,temp2));
                 
                 continue;
             }
             if (keywords[i].equals("OR")) {
-                ArrayList<String> temp1 = (ArrayList<String>) stack.pop();
-                ArrayList<String> temp2 = (ArrayList<String>) stack.pop();
+                ArrayList<String> temp1 = Documents(stack.pop());
+                ArrayList<String> temp2 = Documents(stack.pop());
                 stack.push(Or(temp1,temp2));
                 
                 continue;
             }
 
             ArrayList<String> temp = new ArrayList();
-            DocumentList dList;
-            if ((dList = iHandle.getIndex().get(keywords[i])) == null) return null;
-            DocumentInfo[] dArray = dList.toArray(new DocumentInfo[dList.size()]);
-            for (DocumentInfo doc : dArray)
-                temp.add(doc.GetDocumentName());
-            stack.push(temp);
+            IndexReader reader = iHandle.getReader();
+            if (keywords[i].endsWith("*")) {
+                if ((temp = Wildcard(reader, keywords[i])) == null) return null;
+                stack.push(temp);
+
+                continue;
+            }
+            // a term is read when its operator needs it, so that AND can skip through its list
+            if (reader.getDocFrequency(keywords[i]) == 0) return null;
+            stack.push(keywords[i]);
+        }
+
+        return Documents(stack.pop());
+    }
+
+    /**
+     * Reads the documents of an operand.
+     * @param operand A term or a list of documents.
+     * @return The list of the operand's documents.
+     */
+    private ArrayList<String> Documents(Object operand) {
+        if (!(operand instanceof String)) return (ArrayList<String>) operand;
+
+        ArrayList<String> result = new ArrayList();
+        IndexReader reader = iHandle.getReader();
+        PostingIterator postings = reader.getPostings((String) operand);
+        while (postings.nextDoc() != PostingIterator.NO_MORE_DOCS)
+            result.add(reader.getDocName(postings.docId()));
+        return result;
+    }
+
+    /**
+     * Hanldes the "AND" operator. The posting list of a term operand is not read
+     * whole; it jumps to the documents of the other operand with <code>advance</code>.
+     * @param term1 A term or a list of documents.
+     * @param term2 A term or a list of documents.
+     * @return A list of the documents that are in both operands, in the order of the first operand.
+     */
+    private ArrayList<String> And(Object term1, Object term2) {
+        if (term1 instanceof String && term2 instanceof String)
+            return Intersect((String) term1, (String) term2);
+        if (!(term1 instanceof String) && !(term2 instanceof String))
+            return And((ArrayList<String>) term1, (ArrayList<String>) term2);
+
+        IndexReader reader = iHandle.getReader();
+        ArrayList<String> result = new ArrayList();
+        if (term1 instanceof String) {
+            BitSet docIds = Matches(reader, (ArrayList<String>) term2, (String) term1);
+            for (int docId = docIds.nextSetBit(0); docId >= 0; docId = docIds.nextSetBit(docId + 1))
+                result.add(reader.getDocName(docId));
+        } else {
+            BitSet docIds = Matches(reader, (ArrayList<String>) term1, (String) term2);
+            for (String doc : (ArrayList<String>) term1)
+                if (docIds.get(reader.getDocId(doc)))
+                    result.add(doc);
         }
 
-        return (ArrayList<String>) stack.pop();
+        return result;
+    }
+
+    /**
+     * Intersects the posting lists of two terms. The list of the rarer term
+     * leads and the other list jumps to its documents.
+     * @param term1
+     * @param term2
+     * @return A list of the documents that contain both terms.
+     */
+    private ArrayList<String> Intersect(String term1, String term2) {
+        IndexReader reader = iHandle.getReader();
+        if (reader.getDocFrequency(term2) < reader.getDocFrequency(term1)) {
+            String temp = term1;
+            term1 = term2;
+            term2 = temp;
+        }
+
+        ArrayList<String> result = new ArrayList();
+        PostingIterator lead = reader.getPostings(term1);
+        PostingIterator other = reader.getPostings(term2);
+        int docId = lead.nextDoc();
+        while (docId != PostingIterator.NO_MORE_DOCS) {
+            int otherId = other.advance(docId);
+            if (otherId == docId) {
+                result.add(reader.getDocName(docId));
+                docId = lead.nextDoc();
+            } else
+                docId = lead.advance(otherId);
+        }
+
+        return result;
+    }
+
+    /**
+     * Finds the documents of a list that contain a term. The term's posting
+     * list jumps to the documents of the list in ID order.
+     * @param reader
+     * @param docs A list of documents.
+     * @param term
+     * @return The IDs of the documents of the list that contain the term.
+     */
+    private BitSet Matches(IndexReader reader, ArrayList<String> docs, String term) {
+        int[] docIds = new int[docs.size()];
+        for (int i = 0; i < docIds.length; i++)
+            docIds[i] = reader.getDocId(docs.get(i));
+        Arrays.sort(docIds);
+
+        BitSet matches = new BitSet();
+        PostingIterator postings = reader.getPostings(term);
+        for (int docId : docIds)
+            if (docId >= 0 && postings.advance(docId) == docId)
+                matches.set(docId);
+        return matches;
+    }
+
+    /**
+     * Handles a wildcard term. The words with the term's prefix are found in
+     * the index's sorted dictionary.
+     * @param reader
+     * @param term A term that ends with "*".
+     * @return A list of the documents that contain any of the words, or null if there is no word.
+     */
+    private ArrayList<String> Wildcard(IndexReader reader, String term) {
+        ArrayList<String> words = reader.getWords(term.substring(0, term.length() - 1));
+        if (words.isEmpty()) return null;
+
+        BitSet docIds = new BitSet();
+        for (String word : words) {
+            PostingIterator postings = reader.getPostings(word);
+            if (postings == null) continue;
+            while (postings.nextDoc() != PostingIterator.NO_MORE_DOCS)
+                docIds.set(postings.docId());
+        }
+
+        ArrayList<String> result = new ArrayList();
+        for (int docId = docIds.nextSetBit(0); docId >= 0; docId = docIds.nextSetBit(docId + 1))
+            result.add(reader.getDocName(docId));
+        return result;
     }
 
     /**
@@ -109,7 +255,7 @@ public class BooleanModelManager {
      * @return A list of the documents that do not contain this term.
      */
     private ArrayList<String> Not(ArrayList<String> term) {
-        ArrayList<String> results = iHandle.getIndex().getDocNames();
+        ArrayList<String> results = iHandle.getReader().getDocNames();
 
         for (String docName : term) {
             results.remove(docName);
@@ -0,0 +1,105 @@
+package ixm;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ * This class builds the partial index of a chunk of records of a collection's<br />
+ * file. The records are parsed with <code>Parser.ParsRecord</code> and their text is<br />
+ * indexed from memory, so no document's file is read. If a directory is given,<br />
+ * the documents' files are also written there, like <code>Parser.ParsFile</code><br />
+ * writes them.<br />
+ * <br />
+ * The chunks are built on the threads of a pool and their partial indexes are<br />
+ * merged in the order of the records, like the ones of <code>ParallelIndexBuilder</code>.
+ * </p>
+ *
+ * @see IndexHandle
+ * @see CollectionReader
+ * @see ParallelIndexBuilder
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class CollectionIndexBuilder implements Callable<Index> {
+    private String name;                // the index's name
+    private ArrayList<String> records;  // the records of the chunk
+    private String docsPath;            // the directory of the documents' files or null if they are not written
+    private ArrayList<String> docNames; // the names of the chunk's documents or null if the texts are not kept
+    private ArrayList<String> texts;    // the texts of the chunk's documents or null if they are not kept
+
+    /**
+     *
+     * @param name the index's name
+     * @param records the records of the chunk
+     * @param docsPath the directory of the documents' files or null if they are not written
+     */
+    public CollectionIndexBuilder(String name, ArrayList<String> records, String docsPath) {
+        this.name = name;
+        this.records = records;
+        this.docsPath = docsPath;
+    }
+
+    /**
+     *
+     * @param name the index's name
+     * @param records the records of the chunk
+     * @param docsPath the directory of the documents' files or null if they are not written
+     * @param keepTexts shows if the documents' texts are kept after the chunk is built
+     */
+    public CollectionIndexBuilder(String name, ArrayList<String> records, String docsPath, boolean keepTexts) {
+        this(name, records, docsPath);
+        if (keepTexts) {
+            docNames = new ArrayList<String>(records.size());
+            texts = new ArrayList<String>(records.size());
+        }
+    }
+
+    /**
+     *
+     * @return the partial index of the chunk's documents
+     * @throws IOException if a document's file cannot be written
+     */
+    public Index call() throws IOException {
+        IndexHandle handle = new IndexHandle(new Index(name));
+        handle.BeginBulkInsert();
+        StringBuilder content = new StringBuilder();
+
+        for (String record : records) {
+            content.setLength(0);
+            String docName = Parser.ParsRecord(record, content);
+            if (docsPath != null)
+                Parser.WriteDocument(docsPath + docName, content);
+            String text = content.toString();
+            if (texts != null) {
+                docNames.add(docName);
+                texts.add(text);
+            }
+            handle.InsertDocument(docName, new StringReader(text));
+        }
+        records = null;
+
+        return handle.getIndex();
+    }
+
+    /**
+     *
+     * @return the names of the chunk's documents, in the order of the records, or null if the texts are not kept
+     */
+    public ArrayList<String> getDocNames() {
+        return docNames;
+    }
+
+    /**
+     *
+     * @return the texts of the chunk's documents, in the order of the records, or null if they are not kept
+     */
+    public ArrayList<String> getTexts() {
+        return texts;
+    }
+}
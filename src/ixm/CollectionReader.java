@@ -0,0 +1,83 @@
+package ixm;
+
+import java.io.*;
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * This class reads the records of a collection's file in chunks. A record starts<br />
+ * with an identifier's line (".I") and ends before the next one. The records are<br />
+ * only split, not parsed, so the reading stays short and the records of a chunk<br />
+ * can be parsed by other threads with <code>Parser.ParsRecord</code>. The lines before<br />
+ * the first identifier's line are skipped.
+ * </p>
+ *
+ * @see Parser
+ * @see CollectionIndexBuilder
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class CollectionReader implements Closeable {
+    public static final int CHUNK_SIZE = 256;   // the default number of records of a chunk
+
+    private BufferedReader reader;  // the collection's file
+    private String next;            // the identifier's line of the next record, null at the end of the file
+
+    /**
+     * <p>Opens the collection's file and finds its first record.</p>
+     *
+     * @param filePath the collection's file path
+     * @throws IOException if the file cannot be read
+     */
+    public CollectionReader(String filePath) throws IOException {
+        reader = new BufferedReader(new FileReader(new File(filePath)));
+
+        String line;
+        while ((line = reader.readLine()) != null)
+            if (line.trim().startsWith(Parser.ID)) {
+                next = line;
+                break;
+            }
+    }
+
+    /**
+     *
+     * @param count the max number of records
+     * @return the next records, each one with its lines, or an empty list at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    public ArrayList<String> readRecords(int count) throws IOException {
+        ArrayList<String> records = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+
+        while (next != null && records.size() < count) {
+            sb.setLength(0);
+            sb.append(next).append('\n');
+            next = null;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().startsWith(Parser.ID)) {
+                    next = line;
+                    break;
+                }
+                sb.append(line).append('\n');
+            }
+            records.add(sb.toString());
+        }
+
+        return records;
+    }
+
+    /**
+     * <p>Closes the collection's file.</p>
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,230 @@
+package ixm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class is a read-only index in the memory whose posting lists are kept<br />
+ * compressed (see <code>CompressedPostings</code>). It takes a small part of the<br />
+ * memory of an <code>Index</code>, because it keeps a few bytes for every posting<br />
+ * instead of a <code>DocumentInfo</code> object, and the weights are computed from<br />
+ * the documents' max frequencies while the lists are decoded. The words are kept<br />
+ * front coded in a <code>TermDictionary</code> and the lists in an array in the words'<br />
+ * order.<br />
+ * <br />
+ * The documents take new dense IDs, so the IDs of removed documents are not kept.
+ * </p>
+ *
+ * @see CompressedPostings
+ * @see TermDictionary
+ * @see IndexReader
+ * @see IndexManager
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class CompactIndex implements ReadOnlyIndex {
+    private static final int CACHE_SIZE = 64;   // the number of decoded lists for getWeight
+
+    private String name;                                // the index's name
+    private DocumentDictionary docs;                    // the dictionary with the documents
+    private DocumentStatistics docsStats;               // the statistics of the documents
+    private TermDictionary dictionary;                  // the sorted words
+    private CompressedPostings[] postings;              // the compressed posting lists in the words' order
+    private ArrayList<String> addedWords;               // the words that have been added, until finish
+    private ArrayList<CompressedPostings> addedPostings;    // the lists that have been added, until finish
+    private WeightCache weights;                        // the lists that getWeight has decoded
+
+    /**
+     * <p>
+     * Creates an empty index, that is filled by <code>addDocument</code> and <code>addPostings</code><br />
+     * and then it is completed by <code>finish</code>.
+     * </p>
+     *
+     * @param name the index's name
+     */
+    CompactIndex(String name) {
+        this.name = name;
+        this.docs = new DocumentDictionary();
+        this.docsStats = new DocumentStatistics();
+        this.addedWords = new ArrayList<String>();
+        this.addedPostings = new ArrayList<CompressedPostings>();
+        this.weights = new WeightCache(this, CACHE_SIZE);
+    }
+
+    /**
+     * <p>Compresses the posting lists of an <code>Index</code>.</p>
+     *
+     * @param index the index
+     */
+    public CompactIndex(Index index) {
+        this(index.getName());
+
+        DocumentDictionary indexDocs = index.getDocumentDictionary();
+        DocumentStatistics indexStats = index.getDocumentStatistics();
+        int[] newIds = new int[indexDocs.capacity()];
+        for (int id = 0; id < newIds.length; id++) {
+            newIds[id] = -1;
+            if (!indexDocs.contains(id)) continue;
+
+            newIds[id] = this.addDocument(indexDocs.getName(id), indexStats.getMaxFrequency(id),
+                    indexStats.getLength(id), indexStats.getUniqueTerms(id));
+        }
+
+        String[] words = index.keySet().toArray(new String[index.size()]);
+        Arrays.sort(words);
+        for (String word : words) {
+            CompressedPostings list = new CompressedPostings();
+            for (DocumentInfo dInfo : index.get(word)) {
+                int docId = newIds[dInfo.GetDocumentId()];
+                if (docId >= 0) list.add(docId, dInfo.GetOccurences());
+            }
+            this.addPostings(word, list);
+        }
+        this.finish();
+    }
+
+    /**
+     * <p>Adds a document with the next ID.</p>
+     *
+     * @param docName the document's name
+     * @param maxFrequency the document's max frequency
+     * @param docLength the document's length
+     * @param unique the document's number of unique words
+     * @return the document's ID
+     */
+    int addDocument(String docName, int maxFrequency, int docLength, int unique) {
+        int docId = docs.add(docName);
+        docsStats.set(docId, maxFrequency, docLength, unique);
+        return docId;
+    }
+
+    /**
+     * <p>Adds the posting list of a word. The words must be added in order.</p>
+     *
+     * @param word the word
+     * @param list the word's posting list
+     */
+    void addPostings(String word, CompressedPostings list) {
+        if (list.getDocFrequency() == 0) return;
+
+        list.trim(docsStats);
+        addedWords.add(word);
+        addedPostings.add(list);
+    }
+
+    /**
+     * <p>Builds the dictionary of the added words.</p>
+     */
+    void finish() {
+        dictionary = new TermDictionary(addedWords.toArray(new String[addedWords.size()]));
+        postings = addedPostings.toArray(new CompressedPostings[addedPostings.size()]);
+        addedWords = null;
+        addedPostings = null;
+    }
+
+    public Index toIndex() {
+        Index index = new Index(name);
+        DocumentDictionary indexDocs = index.getDocumentDictionary();
+        DocumentStatistics indexStats = index.getDocumentStatistics();
+        for (int id = 0; id < docs.capacity(); id++) {
+            indexDocs.add(docs.getName(id));
+            indexStats.copy(docsStats, id, id);
+        }
+
+        ArrayList<String> words = dictionary.range("", null);
+        for (int i = 0; i < postings.length; i++) {
+            DocumentList list = new DocumentList();
+            PostingIterator iterator = postings[i].iterator(docsStats, docs.size());
+            while (iterator.nextDoc() != PostingIterator.NO_MORE_DOCS)
+                list.add(iterator.docId(), iterator.occurrences());
+            index.put(words.get(i), list);
+        }
+        index.invalidateWeights();
+
+        return index;
+    }
+
+    /**
+     * <p>The memory is released by the garbage collector.</p>
+     */
+    public void close() {
+        weights.clear();
+    }
+
+    /**
+     *
+     * @return the number of words
+     */
+    public int getTermCount() {
+        return postings.length;
+    }
+
+    /**
+     *
+     * @return the number of bytes of the front coded words
+     */
+    public long getDictionarySize() {
+        return dictionary.getSizeInBytes();
+    }
+
+    /**
+     *
+     * @return the number of bytes of all the compressed posting lists
+     */
+    public long getPostingsSize() {
+        long size = 0;
+        for (CompressedPostings list : postings)
+            size += list.getSizeInBytes();
+        return size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDocCount() {
+        return docs.size();
+    }
+
+    public int getMaxDocId() {
+        return docs.capacity();
+    }
+
+    public boolean containsDoc(int docId) {
+        return docs.contains(docId);
+    }
+
+    public String getDocName(int docId) {
+        return docs.getName(docId);
+    }
+
+    public int getDocId(String docName) {
+        return docs.getId(docName);
+    }
+
+    public ArrayList<String> getDocNames() {
+        return docs.getNames();
+    }
+
+    public int getDocFrequency(String word) {
+        int ordinal = dictionary.find(word);
+        return ordinal < 0 ? 0 : postings[ordinal].getDocFrequency();
+    }
+
+    public ArrayList<String> getWords(String prefix) {
+        return dictionary.prefix(prefix);
+    }
+
+    public PostingIterator getPostings(String word) {
+        int ordinal = dictionary.find(word);
+        return ordinal < 0 ? null : postings[ordinal].iterator(docsStats, docs.size());
+    }
+
+    public double getWeight(String word, int docId) {
+        return weights.getWeight(word, docId);
+    }
+}
@@ -0,0 +1,227 @@
+package ixm;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class keeps a posting list compressed in a byte array. Every posting is<br />
+ * the gap from the previous document ID and the word's frequency, both as<br />
+ * <code>VariableByte</code> numbers, just like the postings of an <code>IndexFile</code>.<br />
+ * A posting usually takes two or three bytes instead of a <code>DocumentInfo</code><br />
+ * object. The weights are not kept, they are computed while the list is decoded.<br />
+ * <br />
+ * When the list is trimmed, it gets skip pointers for <code>advance</code> (see<br />
+ * <code>EncodedPostingIterator</code>) and it finds the posting whose frequency,<br />
+ * normalized by the document's max frequency, is the highest. The weight of<br />
+ * this posting is the max weight of the list. The same posting is also found<br />
+ * for every block of postings between two skip pointers.<br />
+ * <br />
+ * The documents must be added in ID order.
+ * </p>
+ *
+ * @see CompactIndex
+ * @see EncodedPostingIterator
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class CompressedPostings implements Serializable {
+    private byte[] data;        // the encoded postings
+    private int size;           // the number of used bytes
+    private int docFrequency;   // the number of documents of the list
+    private int lastDocId;      // the last document's ID
+    private int[] skipDocIds;   // the last document's ID before every skip pointer, null without pointers
+    private int[] skipPositions;    // the position of the posting of every skip pointer
+    private int boundOccurrences;   // the frequency of the posting with the max normalized frequency
+    private int boundMaxFrequency;  // the document's max frequency of that posting, 1/1 if it is not known
+    private int[] blockOccurrences; // the frequency of that posting of every block, null without pointers
+    private int[] blockMaxFrequencies;  // the document's max frequency of that posting of every block
+
+    /**
+     * <p>Creates an empty list.</p>
+     */
+    public CompressedPostings() {
+        data = new byte[16];
+        size = 0;
+        docFrequency = 0;
+        lastDocId = -1;
+        boundOccurrences = boundMaxFrequency = 1;
+    }
+
+    /**
+     * <p>Appends a document to the end of the list.</p>
+     *
+     * @param docId the document's ID, greater than the last document's ID
+     * @param occurrences the word's frequency in the document
+     */
+    public void add(int docId, int occurrences) {
+        if (docId <= lastDocId)
+            throw new IllegalArgumentException("The documents must be added in ID order");
+
+        if (data.length - size < 10)
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + 10));
+        size = VariableByte.writeInt(data, size, docFrequency == 0 ? docId : docId - lastDocId);
+        size = VariableByte.writeInt(data, size, occurrences);
+        lastDocId = docId;
+        docFrequency++;
+        // the skip pointers and the max weight's postings are found again by the next trim
+        skipDocIds = skipPositions = null;
+        blockOccurrences = blockMaxFrequencies = null;
+        boundOccurrences = boundMaxFrequency = 1;
+    }
+
+    /**
+     * <p>
+     * Drops the unused space at the end of the array, makes the skip pointers<br />
+     * and finds the posting of the max weight of the list and of every block.<br />
+     * The postings of the documents without statistics (deleted documents) are<br />
+     * not used, and a list or a block without other postings is bounded by a<br />
+     * normalized frequency of 1.
+     * </p>
+     *
+     * @param stats the statistics with the documents' max frequencies
+     */
+    public void trim(DocumentStatistics stats) {
+        if (data.length > size) data = Arrays.copyOf(data, size);
+
+        int count = EncodedPostingIterator.skipCount(docFrequency);
+        int interval = EncodedPostingIterator.skipInterval(docFrequency);
+        skipDocIds = (count == 0) ? null : new int[count];
+        skipPositions = (count == 0) ? null : new int[count];
+        blockOccurrences = (count == 0) ? null : new int[count + 1];
+        blockMaxFrequencies = (count == 0) ? null : new int[count + 1];
+        double[] blockNormalized = (count == 0) ? null : new double[count + 1];
+        double maxNormalized = -1;
+        boundOccurrences = boundMaxFrequency = 1;
+        ByteBuffer in = ByteBuffer.wrap(data, 0, size);
+        int docId = 0;
+        for (int i = 0; i < docFrequency; i++) {
+            if (i > 0 && i % interval == 0 && i / interval <= count) {
+                skipDocIds[i / interval - 1] = docId;
+                skipPositions[i / interval - 1] = in.position();
+            }
+            docId += VariableByte.readInt(in);
+            int occurrences = VariableByte.readInt(in);
+
+            // the frequency is normalized like in Index.weight
+            int maxFrequency = stats.getMaxFrequency(docId);
+            if (maxFrequency == 0) continue;
+            double normalized = (double) occurrences / (double) maxFrequency;
+            if (normalized > maxNormalized) {
+                maxNormalized = normalized;
+                boundOccurrences = occurrences;
+                boundMaxFrequency = maxFrequency;
+            }
+            int block = i / interval;
+            if (count > 0 && (blockOccurrences[block] == 0 || normalized > blockNormalized[block])) {
+                blockNormalized[block] = normalized;
+                blockOccurrences[block] = occurrences;
+                blockMaxFrequencies[block] = maxFrequency;
+            }
+        }
+        for (int block = 0; count > 0 && block <= count; block++)
+            if (blockOccurrences[block] == 0) blockOccurrences[block] = blockMaxFrequencies[block] = 1;
+    }
+
+    /**
+     *
+     * @return the encoded postings, in the first <code>getSizeInBytes</code> bytes
+     */
+    byte[] getData() {
+        return data;
+    }
+
+    /**
+     *
+     * @return the number of skip pointers
+     */
+    int getSkipCount() {
+        return skipDocIds == null ? 0 : skipDocIds.length;
+    }
+
+    /**
+     *
+     * @param skip the skip pointer's number
+     * @return the last document's ID before the skip pointer
+     */
+    int getSkipDocId(int skip) {
+        return skipDocIds[skip];
+    }
+
+    /**
+     *
+     * @param skip the skip pointer's number
+     * @return the position of the posting of the skip pointer
+     */
+    int getSkipPosition(int skip) {
+        return skipPositions[skip];
+    }
+
+    /**
+     *
+     * @return the frequency of the posting with the max normalized frequency
+     */
+    int getBoundOccurrences() {
+        return boundOccurrences;
+    }
+
+    /**
+     *
+     * @return the document's max frequency of the posting with the max normalized frequency
+     */
+    int getBoundMaxFrequency() {
+        return boundMaxFrequency;
+    }
+
+    /**
+     *
+     * @param block the block's number, from 0 to <code>getSkipCount</code>
+     * @return the frequency of the block's posting with the max normalized frequency
+     */
+    int getBlockOccurrences(int block) {
+        return blockOccurrences[block];
+    }
+
+    /**
+     *
+     * @param block the block's number, from 0 to <code>getSkipCount</code>
+     * @return the document's max frequency of the block's posting with the max normalized frequency
+     */
+    int getBlockMaxFrequency(int block) {
+        return blockMaxFrequencies[block];
+    }
+
+    /**
+     *
+     * @return the number of documents of the list
+     */
+    public int getDocFrequency() {
+        return docFrequency;
+    }
+
+    /**
+     *
+     * @return the number of bytes of the encoded postings
+     */
+    public int getSizeInBytes() {
+        return size;
+    }
+
+    /**
+     *
+     * @param stats the statistics with the documents' max frequencies
+     * @param docCount the number of documents in the index
+     * @return an iterator that decodes the list
+     */
+    public PostingIterator iterator(DocumentStatistics stats, int docCount) {
+        EncodedPostingIterator iterator = new EncodedPostingIterator(ByteBuffer.wrap(data, 0, size), docFrequency,
+                stats, docCount, skipDocIds, skipPositions);
+        iterator.setBound(boundOccurrences, boundMaxFrequency);
+        iterator.setBlockBounds(blockOccurrences, blockMaxFrequencies);
+        return iterator;
+    }
+}
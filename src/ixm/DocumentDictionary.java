@@ -0,0 +1,147 @@
+package ixm;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * <p>
+ * This class gives every document of an <code>Index</code> a dense integer ID.<br />
+ * The postings keep only the IDs and the names are translated back only when<br />
+ * the results are returned. A removed document keeps its ID, so it takes the<br />
+ * same ID if it is inserted again.
+ * </p>
+ *
+ * @see Index
+ * @see DocumentInfo
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class DocumentDictionary implements Serializable {
+    private ArrayList<String> names;        // the documents' names by ID
+    private HashMap<String,Integer> ids;    // the documents' IDs by name
+    private BitSet contained;               // the IDs of the documents that are in the index
+    private int size;                       // the number of contained documents
+
+    /**
+     * <p>Initializes an empty dictionary.</p>
+     */
+    public DocumentDictionary() {
+        names = new ArrayList<String>();
+        ids = new HashMap<String,Integer>();
+        contained = new BitSet();
+        size = 0;
+    }
+
+    /**
+     * <p>Copies a dictionary.</p>
+     *
+     * @param other the other dictionary
+     */
+    public DocumentDictionary(DocumentDictionary other) {
+        names = new ArrayList<String>(other.names);
+        ids = new HashMap<String,Integer>(other.ids);
+        contained = (BitSet) other.contained.clone();
+        size = other.size;
+    }
+
+    /**
+     * <p>
+     * Adds a document to the dictionary. If the document has been seen before,<br />
+     * it takes its old ID.
+     * </p>
+     *
+     * @param docName the document's name
+     * @return the document's ID
+     */
+    public int add(String docName) {
+        Integer id = ids.get(docName);
+        if (id == null) {
+            id = names.size();
+            names.add(docName);
+            ids.put(docName, id);
+        }
+        if (!contained.get(id)) {
+            contained.set(id);
+            size++;
+        }
+
+        return id;
+    }
+
+    /**
+     * <p>Marks a document as not contained in the index. Its ID is kept.</p>
+     *
+     * @param docId the document's ID
+     * @return a value that shows if the document was contained
+     */
+    public boolean remove(int docId) {
+        if (docId < 0 || !contained.get(docId)) return false;
+
+        contained.clear(docId);
+        size--;
+        return true;
+    }
+
+    /**
+     *
+     * @param docName the document's name
+     * @return the document's ID or -1 if the document has never been added
+     */
+    public int getId(String docName) {
+        Integer id = ids.get(docName);
+        if (id == null) return -1;
+
+        return id;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the document's name
+     */
+    public String getName(int docId) {
+        return names.get(docId);
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return a value that shows if the document is contained in the index
+     */
+    public boolean contains(int docId) {
+        return docId >= 0 && contained.get(docId);
+    }
+
+    /**
+     *
+     * @return the number of contained documents
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the number of IDs that have been given
+     */
+    public int capacity() {
+        return names.size();
+    }
+
+    /**
+     *
+     * @return a new <code>ArrayList</code> with the contained documents' names in ID order
+     */
+    public ArrayList<String> getNames() {
+        ArrayList<String> list = new ArrayList<String>(size);
+        for (int id = contained.nextSetBit(0); id >= 0; id = contained.nextSetBit(id + 1))
+            list.add(names.get(id));
+
+        return list;
+    }
+}
@@ -10,6 +10,7 @@ import java.io.Serializable;
  * </p>
  *
  * @see DocumentList
+ * @see DocumentDictionary
  * @see Index
  *
  * @author Evripidis Gkanias
@@ -18,26 +19,38 @@ import java.io.Serializable;
  * @version 1.0
  */
 public class DocumentInfo implements Serializable {
-    private String document;    // the document's name
+    private int document;       // the document's ID
     private int occurrences;   // the number of occurrences of the word in the document
     private double weight;      // the words weight for this document
 
     /**
      * <p>It initializes the number of occurences to one.</p>
      *
-     * @param document the document's name
+     * @param document the document's ID
      */
-    public DocumentInfo(String document) {
+    public DocumentInfo(int document) {
         this.document = document;
         this.occurrences = 1;
         this.weight = -1;
     }
 
     /**
+     * <p>It initializes the number of occurences to a given number.</p>
      *
-     * @return the document's name
+     * @param document the document's ID
+     * @param occurrences the number of occurrences of the word in the document
      */
-    public String GetDocumentName() {
+    public DocumentInfo(int document, int occurrences) {
+        this.document = document;
+        this.occurrences = occurrences;
+        this.weight = -1;
+    }
+
+    /**
+     *
+     * @return the document's ID
+     */
+    public int GetDocumentId() {
         return document;
     }
 
@@ -74,10 +87,20 @@ public class DocumentInfo implements Serializable {
         return ++occurrences;
     }
 
+    /**
+     * <p>It adds many occurrences to this document.</p>
+     *
+     * @param count the number of the new occurrences
+     * @return the new number of occurences
+     */
+    public int AddOccurrences(int count) {
+        return occurrences += count;
+    }
+
     /**
      * <p>
      * This is the format of the returned string:<br />
-     * <blockquote>(<i>&lt;document's name&gt;</i>, <i>&lt;number of occurrences&gt;</i>)</blockquote>
+     * <blockquote>(<i>&lt;document's ID&gt;</i>, <i>&lt;number of occurrences&gt;</i>)</blockquote>
      * </p>
      *
      * @return the document information as a string
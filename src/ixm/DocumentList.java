@@ -2,13 +2,21 @@ package ixm;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 
 /**
  * This class is a list of <code>DocumentInfo</code> objects. It also has information<br />
- * about the number of occurrences that the word has from all the documents.
+ * about the number of occurrences that the word has from all the documents.<br />
+ * The list is kept sorted by document ID. The documents are indexed one after<br />
+ * the other, so the document that is being indexed is always the last one and<br />
+ * it is found in constant time. Any other document is found by binary search.<br />
+ * The weights are computed by the <code>Index</code>, which keeps the max weight of<br />
+ * the list and of every block of <code>EncodedPostingIterator.skipInterval</code> documents,<br />
+ * like the blocks of a compressed list.
  *
  * @see Index
  * @see DocumentInfo
+ * @see PostingIterator
  *
  * @author Evripidis Gkanias
  * @author Stergios Giannouloudis
@@ -17,6 +25,11 @@ import java.util.ArrayList;
  */
 public class DocumentList extends ArrayList<DocumentInfo> implements Serializable {
     private long occurrences = 0;   // number of occurreces from all the documents
+    private int termId = -1;        // the word's ID in the index's forward index
+    private boolean shared;         // shows if the list is also in a snapshot, so it is copied before a change
+    private double maxWeight;       // the max weight of the documents, since the weights were computed
+    private double[] blockMaxWeights;   // the max weight of every block, null before the weights are computed
+    private int blockSize;          // the number of documents of a block, when the weights were computed
 
     /**
      * <p>
@@ -24,54 +37,218 @@ public class DocumentList extends ArrayList<DocumentInfo> implements Serializabl
      * adds an occurrence to the specific document.
      * </p>
      *
-     * @param docName the document's name
+     * @param docId the document's ID
      * @return a value that shows if the document has been added successfully
      */
-    public boolean add(String docName) {
-        for (DocumentInfo docInfo : this) {
-            if (docInfo.GetDocumentName().equals(docName)) {
-                docInfo.AddOccurrence();
-                occurrences++;
-                return true;
-            }
+    public boolean add(int docId) {
+        return this.add(docId, 1);
+    }
+
+    /**
+     * <p>
+     * Adds a document with many occurrences to the list. If the document already<br />
+     * exists in the list, adds the occurrences to the specific document.
+     * </p>
+     *
+     * @param docId the document's ID
+     * @param count the number of occurrences
+     * @return a value that shows if the document has been added successfully
+     */
+    public boolean add(int docId, int count) {
+        int last = this.size() - 1;
+
+        if (last < 0 || this.get(last).GetDocumentId() < docId) {
+            this.add(new DocumentInfo(docId, count));
+        } else if (this.get(last).GetDocumentId() == docId) {
+            this.get(last).AddOccurrences(count);
+        } else {
+            int pos = this.search(docId);
+            if (pos >= 0)
+                this.get(pos).AddOccurrences(count);
+            else
+                this.add(-(pos + 1), new DocumentInfo(docId, count));
         }
 
-        this.add(new DocumentInfo(docName));
-        occurrences++;
+        occurrences += count;
         return true;
     }
 
     /**
      * <p>Removes a document from the list.</p>
      *
-     * @param docName the document's name
+     * @param docId the document's ID
      * @return a value that shows if the document has been removed successfully
      */
-    public boolean remove(String docName) {
+    public boolean removeDoc(int docId) {
+        int pos = this.indexOf(docId);
+        if (pos < 0) return false;
 
-        for (DocumentInfo docInfo : this) {
-            if (docInfo.GetDocumentName().equals(docName)) {
-                if (this.remove(docInfo)) {
-                    occurrences--;
-                    return true;
-                } else return false;
-            }
+        this.remove(pos);
+        occurrences--;
+        return true;
+    }
+
+    /**
+     * <p>Removes many documents from the list in one pass.</p>
+     *
+     * @param docIds the IDs of the documents
+     * @return the number of the removed documents
+     */
+    public int removeDocs(BitSet docIds) {
+        int kept = 0;
+
+        for (int i = 0; i < this.size(); i++) {
+            DocumentInfo dInfo = this.get(i);
+            if (docIds.get(dInfo.GetDocumentId()))
+                occurrences -= dInfo.GetOccurences();
+            else
+                this.set(kept++, dInfo);
         }
 
-        return false;
+        int removed = this.size() - kept;
+        if (removed > 0) this.subList(kept, this.size()).clear();
+        return removed;
     }
 
     /**
      *
-     * @param docName the document's name
+     * @param docId the document's ID
      * @return the document's index in the <code>DocumentList</code>
      */
-    public int indexOf(String docName) {
-        for (DocumentInfo info : this)
-            if (info.GetDocumentName().equals(docName))
-                return this.indexOf(info);
+    public int indexOf(int docId) {
+        int last = this.size() - 1;
+        if (last >= 0 && this.get(last).GetDocumentId() == docId)
+            return last;
+
+        int pos = this.search(docId);
+        return pos >= 0 ? pos : -1;
+    }
+
+    /**
+     * <p>Binary search for a document ID in the sorted list.</p>
+     *
+     * @param docId the document's ID
+     * @return the document's index, or <code>-(insertion point) - 1</code> if it is not in the list
+     */
+    private int search(int docId) {
+        int low = 0, high = this.size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midId = this.get(mid).GetDocumentId();
+            if (midId < docId) low = mid + 1;
+            else if (midId > docId) high = mid - 1;
+            else return mid;
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     *
+     * @return the word's ID in the index's forward index
+     */
+    int getTermId() {
+        return termId;
+    }
+
+    /**
+     *
+     * @param termId the word's ID in the index's forward index
+     */
+    void setTermId(int termId) {
+        this.termId = termId;
+    }
+
+    /**
+     *
+     * @return shows if the list is also in a snapshot of its index
+     */
+    boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * <p>Marks the list as shared with a snapshot, so that it is not changed any more.</p>
+     */
+    void setShared() {
+        shared = true;
+    }
+
+    /**
+     * <p>
+     * Copies the list with new <code>DocumentInfo</code> objects, so that the copy<br />
+     * can be changed. The copy has the same word ID and it is not shared.
+     * </p>
+     *
+     * @return the copy of the list
+     */
+    DocumentList copy() {
+        DocumentList copy = new DocumentList();
+        copy.ensureCapacity(this.size());
+        for (DocumentInfo dInfo : this) {
+            DocumentInfo info = new DocumentInfo(dInfo.GetDocumentId(), dInfo.GetOccurences());
+            info.SetWeight(dInfo.GetWeight());
+            copy.add(info);
+        }
+        copy.occurrences = occurrences;
+        copy.termId = termId;
+        copy.maxWeight = maxWeight;
+        copy.blockMaxWeights = (blockMaxWeights == null) ? null : blockMaxWeights.clone();
+        copy.blockSize = blockSize;
 
-        return -1;
+        return copy;
+    }
+
+    /**
+     *
+     * @return an iterator over the list with the weights that are stored in it
+     */
+    public PostingIterator postings() {
+        return new ListIterator();
+    }
+
+    /**
+     *
+     * @return the max weight of the documents, when the weights are up to date
+     */
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * <p>
+     * Clears the max weights of the list and of its blocks, before the weights<br />
+     * are computed again. The blocks are made for the list's current size.
+     * </p>
+     */
+    void resetMaxWeights() {
+        maxWeight = 0;
+        blockSize = EncodedPostingIterator.skipInterval(this.size());
+        blockMaxWeights = new double[EncodedPostingIterator.skipCount(this.size()) + 1];
+    }
+
+    /**
+     * <p>Raises the max weights of the list and of a document's block to a new weight.</p>
+     *
+     * @param position the document's position in the list
+     * @param weight the document's new weight
+     */
+    void raiseMaxWeights(int position, double weight) {
+        if (weight > maxWeight) maxWeight = weight;
+        if (!this.hasBlocks()) return;
+
+        int block = Math.min(position / blockSize, blockMaxWeights.length - 1);
+        if (weight > blockMaxWeights[block]) blockMaxWeights[block] = weight;
+    }
+
+    /**
+     *
+     * @return true if the blocks were made for the list's current size
+     */
+    private boolean hasBlocks() {
+        return blockMaxWeights != null
+                && blockMaxWeights.length == EncodedPostingIterator.skipCount(this.size()) + 1;
     }
 
     /**
@@ -104,5 +281,81 @@ public class DocumentList extends ArrayList<DocumentInfo> implements Serializabl
         sb.append("]");
         return sb.toString();
     }
+
+    /**
+     * <p>A <code>PostingIterator</code> over the list.</p>
+     */
+    private class ListIterator implements PostingIterator {
+        private int position = -1;  // the index of the current document in the list
+        private int block;          // the current block, for advanceBlock
+
+        public int nextDoc() {
+            if (position < size()) position++;
+            return docId();
+        }
+
+        /**
+         * <p>The target is found by galloping and then binary search.</p>
+         */
+        public int advance(int target) {
+            if (docId() >= target) return docId();
+
+            int low = position + 1, step = 1;
+            while (low + step < size() && get(low + step).GetDocumentId() < target) {
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, size() - 1);
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (get(mid).GetDocumentId() < target) low = mid + 1;
+                else high = mid - 1;
+            }
+
+            position = low;
+            return docId();
+        }
+
+        public int docId() {
+            if (position < 0) return -1;
+            if (position >= size()) return NO_MORE_DOCS;
+            return get(position).GetDocumentId();
+        }
+
+        public int occurrences() {
+            return get(position).GetOccurences();
+        }
+
+        public double weight() {
+            return get(position).GetWeight();
+        }
+
+        public double maxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * <p>
+         * The list's blocks are found by their last documents. If the blocks are<br />
+         * not made for the list's current size, the whole list is one block.
+         * </p>
+         */
+        public int advanceBlock(int target) {
+            if (!hasBlocks()) return NO_MORE_DOCS;
+
+            int last = blockMaxWeights.length - 1;
+            while (block < last && get((block + 1) * blockSize - 1).GetDocumentId() < target)
+                block++;
+            return (block < last) ? get((block + 1) * blockSize - 1).GetDocumentId() : NO_MORE_DOCS;
+        }
+
+        public double blockMaxWeight() {
+            return hasBlocks() ? blockMaxWeights[block] : maxWeight;
+        }
+
+        public int documentFrequency() {
+            return size();
+        }
+    }
     
 }
@@ -0,0 +1,247 @@
+package ixm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class keeps the statistics of every document of an <code>Index</code> in<br />
+ * primitive arrays by document ID. For every document it has the max frequency<br />
+ * of its words with the number of words that have it, its length (the number<br />
+ * of its words), the number of its unique words and the norm of its weights'<br />
+ * vector.<br />
+ * <br />
+ * When a word with the max frequency is removed, the max frequency has to be<br />
+ * found again only if no other word has it. The number is unknown (zero) for<br />
+ * the documents whose statistics have been set from a file.
+ * </p>
+ *
+ * @see Index
+ * @see DocumentDictionary
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class DocumentStatistics implements Serializable {
+    private int[] maxFreq;      // the max frequency of a word in every document
+    private int[] maxCount;     // the number of words with the max frequency in every document, 0 if unknown
+    private int[] length;       // the number of words of every document
+    private int[] uniqueTerms;  // the number of unique words of every document
+    private double[] norm;      // the sum of the squared weights of every document
+
+    /**
+     * <p>Initializes an empty table.</p>
+     */
+    public DocumentStatistics() {
+        maxFreq = new int[16];
+        maxCount = new int[16];
+        length = new int[16];
+        uniqueTerms = new int[16];
+        norm = new double[16];
+    }
+
+    /**
+     * <p>Copies a table.</p>
+     *
+     * @param other the other table
+     */
+    public DocumentStatistics(DocumentStatistics other) {
+        maxFreq = other.maxFreq.clone();
+        maxCount = other.maxCount.clone();
+        length = other.length.clone();
+        uniqueTerms = other.uniqueTerms.clone();
+        norm = other.norm.clone();
+    }
+
+    /**
+     * <p>
+     * Adds an occurrence of a word to a document. It updates the document's length,<br />
+     * the number of unique words, the max frequency and the number of words that<br />
+     * have it.
+     * </p>
+     *
+     * @param docId the document's ID
+     * @param frequency the new frequency of the word in the document
+     */
+    public void addOccurrence(int docId, int frequency) {
+        ensureCapacity(docId);
+        length[docId]++;
+        if (frequency == 1) uniqueTerms[docId]++;
+        if (frequency > maxFreq[docId]) {
+            maxFreq[docId] = frequency;
+            maxCount[docId] = 1;
+        } else if (frequency == maxFreq[docId] && maxCount[docId] > 0)
+            maxCount[docId]++;
+    }
+
+    /**
+     * <p>Removes a word with all of its occurrences from a document.</p>
+     *
+     * @param docId the document's ID
+     * @param frequency the frequency of the word in the document
+     * @return a value that shows if the document's max frequency has to be found again
+     */
+    public boolean removeTerm(int docId, int frequency) {
+        length[docId] -= frequency;
+        uniqueTerms[docId]--;
+        if (frequency != maxFreq[docId]) return false;
+        if (maxCount[docId] > 1) {
+            maxCount[docId]--;
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * <p>Sets the statistics of a document.</p>
+     *
+     * @param docId the document's ID
+     * @param maxFrequency the max frequency of a word in the document
+     * @param docLength the number of words of the document
+     * @param unique the number of unique words of the document
+     */
+    public void set(int docId, int maxFrequency, int docLength, int unique) {
+        ensureCapacity(docId);
+        maxFreq[docId] = maxFrequency;
+        maxCount[docId] = 0;
+        length[docId] = docLength;
+        uniqueTerms[docId] = unique;
+        norm[docId] = 0.0;
+    }
+
+    /**
+     * <p>Copies the statistics of a document from another table.</p>
+     *
+     * @param other the other table
+     * @param otherId the document's ID in the other table
+     * @param docId the document's ID in this table
+     */
+    public void copy(DocumentStatistics other, int otherId, int docId) {
+        ensureCapacity(docId);
+        maxFreq[docId] = other.getMaxFrequency(otherId);
+        maxCount[docId] = otherId < other.maxCount.length ? other.maxCount[otherId] : 0;
+        length[docId] = other.getLength(otherId);
+        uniqueTerms[docId] = other.getUniqueTerms(otherId);
+        norm[docId] = 0.0;
+    }
+
+    /**
+     * <p>Resets the statistics of a document.</p>
+     *
+     * @param docId the document's ID
+     */
+    public void clear(int docId) {
+        if (docId >= maxFreq.length) return;
+
+        maxFreq[docId] = 0;
+        maxCount[docId] = 0;
+        length[docId] = 0;
+        uniqueTerms[docId] = 0;
+        norm[docId] = 0.0;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the max frequency of a word in the document
+     */
+    public int getMaxFrequency(int docId) {
+        return docId < maxFreq.length ? maxFreq[docId] : 0;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @param frequency the new max frequency of a word in the document
+     */
+    public void setMaxFrequency(int docId, int frequency) {
+        this.setMaxFrequency(docId, frequency, 0);
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @param frequency the new max frequency of a word in the document
+     * @param count the number of words with the max frequency, 0 if unknown
+     */
+    public void setMaxFrequency(int docId, int frequency, int count) {
+        ensureCapacity(docId);
+        maxFreq[docId] = frequency;
+        maxCount[docId] = count;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the number of words of the document
+     */
+    public int getLength(int docId) {
+        return docId < length.length ? length[docId] : 0;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the number of unique words of the document
+     */
+    public int getUniqueTerms(int docId) {
+        return docId < uniqueTerms.length ? uniqueTerms[docId] : 0;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the norm of the document's weights' vector
+     */
+    public double getNorm(int docId) {
+        return docId < norm.length ? Math.sqrt(Math.max(norm[docId], 0.0)) : 0.0;
+    }
+
+    /**
+     * <p>Sets every norm to zero before they are computed again.</p>
+     */
+    public void resetNorms() {
+        Arrays.fill(norm, 0.0);
+    }
+
+    /**
+     * <p>Adds the square of a weight to the norm of a document.</p>
+     *
+     * @param docId the document's ID
+     * @param weight the weight of a word in the document
+     */
+    public void addToNorm(int docId, double weight) {
+        ensureCapacity(docId);
+        norm[docId] += weight * weight;
+    }
+
+    /**
+     * <p>Removes the square of an old weight from the norm of a document.</p>
+     *
+     * @param docId the document's ID
+     * @param weight the old weight of a word in the document
+     */
+    public void removeFromNorm(int docId, double weight) {
+        if (docId < norm.length && weight > 0)
+            norm[docId] -= weight * weight;
+    }
+
+    /**
+     * <p>Grows the arrays so that they can hold the document ID.</p>
+     *
+     * @param docId the document's ID
+     */
+    private void ensureCapacity(int docId) {
+        if (docId < maxFreq.length) return;
+
+        int capacity = Math.max(docId + 1, maxFreq.length * 2);
+        maxFreq = Arrays.copyOf(maxFreq, capacity);
+        maxCount = Arrays.copyOf(maxCount, capacity);
+        length = Arrays.copyOf(length, capacity);
+        uniqueTerms = Arrays.copyOf(uniqueTerms, capacity);
+        norm = Arrays.copyOf(norm, capacity);
+    }
+}
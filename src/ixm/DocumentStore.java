@@ -0,0 +1,229 @@
+package ixm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * This class keeps the text of the documents of a collection in one file,<br />
+ * instead of a file for every document. The documents are packed in blocks<br />
+ * that are compressed with DEFLATE (see <code>DocumentStoreWriter</code>). The table<br />
+ * at the end of the file has the block, the offset and the length of every<br />
+ * document by its store ID, so a document is fetched by reading and<br />
+ * decompressing one block. The last <code>CACHE_BLOCKS</code> decompressed blocks are<br />
+ * kept, so the documents of a result list, which are often near each other,<br />
+ * are fetched without reading the file again.<br />
+ * <br />
+ * This is the format of the file:<br />
+ * <blockquote>
+ * <i>&lt;magic&gt; &lt;version&gt; &lt;compressed blocks&gt;</i><br />
+ * <i>&lt;number of documents&gt;</i> (<i>&lt;name&gt; &lt;block&gt; &lt;offset&gt; &lt;length&gt;</i>)*<br />
+ * <i>&lt;number of blocks&gt;</i> (<i>&lt;position&gt; &lt;compressed length&gt; &lt;length&gt;</i>)*<br />
+ * <i>&lt;position of the table&gt;</i>
+ * </blockquote>
+ * </p>
+ *
+ * @see DocumentStoreWriter
+ * @see IndexManager
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class DocumentStore implements Closeable {
+    public static final String FILE_NAME = "DOCS.store";    // the store's file in the collection's directory
+    public static final int BLOCK_SIZE = 32 << 10;          // the number of bytes of the documents of a block
+    public static final int CACHE_BLOCKS = 32;              // the number of decompressed blocks that are kept
+    static final int MAGIC = 0x41524453;                    // the first bytes of the file ("ARDS")
+    static final int VERSION = 1;                           // the version of the format
+
+    private RandomAccessFile file;          // the store's file
+    private FileChannel channel;            // the file's channel
+    private ArrayList<String> names;        // the documents' names, by store ID
+    private HashMap<String,Integer> ids;    // the documents' store IDs, by name
+    private int[] docBlock;                 // the block of every document
+    private int[] docOffset;                // the offset of every document in its block
+    private int[] docLength;                // the number of bytes of every document
+    private long[] blockPosition;           // the position of every block in the file
+    private int[] blockCompressed;          // the compressed length of every block
+    private int[] blockLength;              // the length of every block
+    private LinkedHashMap<Integer,byte[]> cache;    // the decompressed blocks, the last used at the end
+    private Inflater inflater;              // decompresses the blocks
+
+    /**
+     * <p>Opens the store and reads its table.</p>
+     *
+     * @param path the store's path
+     * @throws IOException if the file cannot be read or it is not a store
+     */
+    public DocumentStore(String path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        try {
+            if (file.length() < 16 || file.readInt() != MAGIC)
+                throw new IOException("Not a document store: " + path);
+            int version = file.readInt();
+            if (version < 1 || version > VERSION)
+                throw new IOException("Unknown document store version " + version);
+
+            file.seek(file.length() - 8);
+            long tablePosition = file.readLong();
+            file.seek(tablePosition);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file.getFD()), 1 << 16));
+
+            int docCount = in.readInt();
+            names = new ArrayList<String>(docCount);
+            ids = new HashMap<String,Integer>(docCount * 2);
+            docBlock = new int[docCount];
+            docOffset = new int[docCount];
+            docLength = new int[docCount];
+            for (int i = 0; i < docCount; i++) {
+                names.add(in.readUTF());
+                ids.put(names.get(i), i);
+                docBlock[i] = in.readInt();
+                docOffset[i] = in.readInt();
+                docLength[i] = in.readInt();
+            }
+
+            int blockCount = in.readInt();
+            blockPosition = new long[blockCount];
+            blockCompressed = new int[blockCount];
+            blockLength = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                blockPosition[i] = in.readLong();
+                blockCompressed[i] = in.readInt();
+                blockLength[i] = in.readInt();
+            }
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+
+        channel = file.getChannel();
+        inflater = new Inflater();
+        cache = new LinkedHashMap<Integer,byte[]>(CACHE_BLOCKS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer,byte[]> eldest) {
+                return size() > CACHE_BLOCKS;
+            }
+        };
+    }
+
+    /**
+     *
+     * @return the number of documents
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     *
+     * @param docName the document's name
+     * @return the document's store ID or -1 if the document is not in the store
+     */
+    public int getDocId(String docName) {
+        Integer docId = ids.get(docName);
+        return docId == null ? -1 : docId;
+    }
+
+    /**
+     *
+     * @param docId the document's store ID
+     * @return the document's name
+     */
+    public String getDocName(int docId) {
+        return names.get(docId);
+    }
+
+    /**
+     *
+     * @return the names of the documents, by store ID
+     */
+    public ArrayList<String> getDocNames() {
+        return new ArrayList<String>(names);
+    }
+
+    /**
+     *
+     * @param docName the document's name
+     * @return the document's text or null if the document is not in the store
+     * @throws IOException if the document's block cannot be read
+     */
+    public String getDocument(String docName) throws IOException {
+        int docId = this.getDocId(docName);
+        return docId < 0 ? null : this.getDocument(docId);
+    }
+
+    /**
+     *
+     * @param docId the document's store ID
+     * @return the document's text
+     * @throws IOException if the document's block cannot be read
+     */
+    public String getDocument(int docId) throws IOException {
+        if (docId < 0 || docId >= names.size())
+            throw new IndexOutOfBoundsException("No document with ID " + docId);
+
+        byte[] block = this.getBlock(docBlock[docId]);
+        return new String(block, docOffset[docId], docLength[docId], IndexFile.UTF8);
+    }
+
+    /**
+     * <p>Closes the store's file.</p>
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            cache.clear();
+            inflater.end();
+        }
+        file.close();
+    }
+
+    /**
+     * <p>Finds a decompressed block in the cache or reads and decompresses it.</p>
+     *
+     * @param blockId the block's number
+     * @return the documents of the block
+     * @throws IOException if the block cannot be read or decompressed
+     */
+    private synchronized byte[] getBlock(int blockId) throws IOException {
+        byte[] block = cache.get(blockId);
+        if (block != null) return block;
+
+        ByteBuffer compressed = ByteBuffer.allocate(blockCompressed[blockId]);
+        long position = blockPosition[blockId];
+        while (compressed.hasRemaining()) {
+            int n = channel.read(compressed, position + compressed.position());
+            if (n < 0) throw new EOFException("The block " + blockId + " is not complete");
+        }
+
+        block = new byte[blockLength[blockId]];
+        inflater.reset();
+        try {
+            inflater.setInput(compressed.array());
+            int length = 0;
+            while (length < block.length) {
+                int n = inflater.inflate(block, length, block.length - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                length += n;
+            }
+            if (length < block.length)
+                throw new IOException("The block " + blockId + " is not complete");
+        } catch (DataFormatException ex) {
+            throw new IOException("The block " + blockId + " is corrupted", ex);
+        }
+
+        cache.put(blockId, block);
+        return block;
+    }
+}
@@ -0,0 +1,145 @@
+package ixm;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * This class writes a <code>DocumentStore</code>. The documents are added one after<br />
+ * the other and they are packed in blocks of about <code>DocumentStore.BLOCK_SIZE</code><br />
+ * bytes, which are compressed with DEFLATE. A document is never split, so a<br />
+ * large document makes a larger block. The table of the documents is written<br />
+ * when the writer is closed.<br />
+ * <br />
+ * A document that is added again replaces the old one. The old text stays in<br />
+ * its block, but it is not in the table any more.
+ * </p>
+ *
+ * @see DocumentStore
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class DocumentStoreWriter implements Closeable {
+    private DataOutputStream out;               // the store's file
+    private long position;                      // the number of written bytes
+    private Deflater deflater;                  // compresses the blocks
+    private ByteArrayOutputStream block;        // the documents of the current block
+    private byte[] buffer = new byte[8192];     // the compressed bytes
+    private ArrayList<String> names;            // the documents' names, by store ID
+    private HashMap<String,Integer> ids;        // the documents' store IDs, by name
+    private int[] docBlock = new int[16];       // the block of every document
+    private int[] docOffset = new int[16];      // the offset of every document in its block
+    private int[] docLength = new int[16];      // the number of bytes of every document
+    private ArrayList<long[]> blocks;           // the position, compressed length and length of every block
+
+    /**
+     * <p>Creates the store's file. An old file is replaced.</p>
+     *
+     * @param path the store's path
+     * @throws IOException if the file cannot be created
+     */
+    public DocumentStoreWriter(String path) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16));
+        out.writeInt(DocumentStore.MAGIC);
+        out.writeInt(DocumentStore.VERSION);
+        position = 8;
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        block = new ByteArrayOutputStream(DocumentStore.BLOCK_SIZE + 1024);
+        names = new ArrayList<String>();
+        ids = new HashMap<String,Integer>();
+        blocks = new ArrayList<long[]>();
+    }
+
+    /**
+     * <p>Adds a document to the current block.</p>
+     *
+     * @param docName the document's name
+     * @param text the document's text
+     * @throws IOException if a full block cannot be written
+     */
+    public void add(String docName, CharSequence text) throws IOException {
+        byte[] bytes = text.toString().getBytes(IndexFile.UTF8);
+
+        Integer docId = ids.get(docName);
+        if (docId == null) {
+            docId = names.size();
+            names.add(docName);
+            ids.put(docName, docId);
+            if (docId == docBlock.length) {
+                docBlock = Arrays.copyOf(docBlock, docId * 2);
+                docOffset = Arrays.copyOf(docOffset, docId * 2);
+                docLength = Arrays.copyOf(docLength, docId * 2);
+            }
+        }
+        docBlock[docId] = blocks.size();
+        docOffset[docId] = block.size();
+        docLength[docId] = bytes.length;
+        block.write(bytes);
+
+        if (block.size() >= DocumentStore.BLOCK_SIZE) this.flushBlock();
+    }
+
+    /**
+     *
+     * @return the number of documents
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * <p>Writes the last block and the table of the documents and closes the file.</p>
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void close() throws IOException {
+        try {
+            if (block.size() > 0) this.flushBlock();
+
+            long tablePosition = position;
+            out.writeInt(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                out.writeUTF(names.get(i));
+                out.writeInt(docBlock[i]);
+                out.writeInt(docOffset[i]);
+                out.writeInt(docLength[i]);
+            }
+            out.writeInt(blocks.size());
+            for (long[] b : blocks) {
+                out.writeLong(b[0]);
+                out.writeInt((int) b[1]);
+                out.writeInt((int) b[2]);
+            }
+            out.writeLong(tablePosition);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    /**
+     * <p>Compresses the current block and writes it.</p>
+     *
+     * @throws IOException if the block cannot be written
+     */
+    private void flushBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(block.toByteArray());
+        deflater.finish();
+
+        long start = position;
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            out.write(buffer, 0, n);
+            position += n;
+        }
+        blocks.add(new long[] {start, position - start, block.size()});
+        block.reset();
+    }
+}
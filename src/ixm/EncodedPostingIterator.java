@@ -0,0 +1,306 @@
+package ixm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * This class decodes a posting list that is encoded like in the <code>IndexFile</code><br />
+ * (document ID gaps and frequencies as <code>VariableByte</code> numbers). The<br />
+ * weights are not stored in the encoded list, so they are computed with<br />
+ * <code>Index.weight</code> from the documents' max frequencies.<br />
+ * <br />
+ * A long list has skip pointers: after every <code>skipInterval</code> postings, the ID<br />
+ * of the last document and the position of the next posting. With them<br />
+ * <code>advance</code> jumps over the postings before the target without decoding them.<br />
+ * The interval is the square root of the list's length, but not less than<br />
+ * <code>MIN_SKIP_INTERVAL</code>.<br />
+ * <br />
+ * The max weight of the list is the weight of the posting whose frequency,<br />
+ * normalized by the document's max frequency, is the highest, since the<br />
+ * other parts of the weight are the same for all the documents. If this<br />
+ * posting is not known, the normalized frequency is at most 1.<br />
+ * <br />
+ * The postings between two skip pointers are a block, and the list may also<br />
+ * know the posting with the highest normalized frequency of every block.<br />
+ * A list without skip pointers is one block, with the max weight of the list.
+ * </p>
+ *
+ * @see IndexFile
+ * @see MappedIndex
+ * @see CompressedPostings
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class EncodedPostingIterator implements PostingIterator {
+    public static final int MIN_SKIP_INTERVAL = 16; // the min number of postings between two skip pointers
+
+    private ByteBuffer data;            // the encoded list
+    private int docFrequency;           // the number of documents of the list
+    private DocumentStatistics stats;   // the statistics with the documents' max frequencies
+    private int docCount;               // the number of documents in the index
+    private int read;                   // the number of documents that have been read
+    private int docId;                  // the current document's ID
+    private int occurrences;            // the frequency of the word in the current document
+    private int[] skipDocIds;           // the last document's ID before every skip pointer
+    private int[] skipPositions;        // the position of the posting of every skip pointer
+    private ByteBuffer skipTable;       // the encoded skip pointers, until they are decoded
+    private int skipCount;              // the number of skip pointers
+    private int skipInterval;           // the number of postings between two skip pointers
+    private int boundOccurrences = 1;   // the frequency of the posting with the max normalized frequency
+    private int boundMaxFrequency = 1;  // the document's max frequency of that posting
+    private int[] blockOccurrences;     // the frequency of that posting of every block, null if it is not known
+    private int[] blockMaxFrequencies;  // the document's max frequency of that posting of every block
+    private boolean blockBounds;        // shows if the encoded skip pointers are followed by the blocks' postings
+    private int block;                  // the current block, for advanceBlock
+
+    /**
+     *
+     * @param data the encoded list, from its position to its limit
+     * @param docFrequency the number of documents of the list
+     * @param stats the statistics with the documents' max frequencies
+     * @param docCount the number of documents in the index
+     */
+    public EncodedPostingIterator(ByteBuffer data, int docFrequency, DocumentStatistics stats, int docCount) {
+        this.data = data;
+        this.docFrequency = docFrequency;
+        this.stats = stats;
+        this.docCount = docCount;
+        this.read = 0;
+        this.docId = -1;
+        this.skipInterval = skipInterval(docFrequency);
+    }
+
+    /**
+     *
+     * @param data the encoded list, from its position to its limit
+     * @param docFrequency the number of documents of the list
+     * @param stats the statistics with the documents' max frequencies
+     * @param docCount the number of documents in the index
+     * @param skipDocIds the last document's ID before every skip pointer
+     * @param skipPositions the position of the posting of every skip pointer
+     */
+    public EncodedPostingIterator(ByteBuffer data, int docFrequency, DocumentStatistics stats, int docCount,
+            int[] skipDocIds, int[] skipPositions) {
+        this(data, docFrequency, stats, docCount);
+        this.skipDocIds = skipDocIds;
+        this.skipPositions = skipPositions;
+        this.skipCount = skipDocIds == null ? 0 : skipDocIds.length;
+    }
+
+    /**
+     * <p>
+     * Decodes a list of an <code>IndexFile</code> that starts with its skip pointers:<br />
+     * their number, their size in bytes and the pointers as gaps from the previous<br />
+     * pointer. The pointers are decoded on the first <code>advance</code>.
+     * </p>
+     *
+     * @param list the list with its skip pointers, from its position to its limit
+     * @param docFrequency the number of documents of the list
+     * @param stats the statistics with the documents' max frequencies
+     * @param docCount the number of documents in the index
+     * @return the iterator
+     */
+    public static EncodedPostingIterator withSkipTable(ByteBuffer list, int docFrequency, DocumentStatistics stats,
+            int docCount) {
+        return withSkipTable(list, docFrequency, stats, docCount, false);
+    }
+
+    /**
+     * <p>
+     * Decodes a list of an <code>IndexFile</code> that starts with its skip pointers.<br />
+     * With block bounds, every pointer is followed by the frequency and the<br />
+     * document's max frequency of the max weight's posting of the block before<br />
+     * it, and the last pointer by the same pair of the last block.
+     * </p>
+     *
+     * @param list the list with its skip pointers, from its position to its limit
+     * @param docFrequency the number of documents of the list
+     * @param stats the statistics with the documents' max frequencies
+     * @param docCount the number of documents in the index
+     * @param blockBounds shows if the skip pointers have the blocks' postings
+     * @return the iterator
+     */
+    public static EncodedPostingIterator withSkipTable(ByteBuffer list, int docFrequency, DocumentStatistics stats,
+            int docCount, boolean blockBounds) {
+        int count = VariableByte.readInt(list);
+        ByteBuffer table = null;
+        if (count > 0) {
+            int length = VariableByte.readInt(list);
+            table = list.slice();
+            table.limit(length);
+            list.position(list.position() + length);
+        }
+
+        EncodedPostingIterator iterator = new EncodedPostingIterator(list.slice(), docFrequency, stats, docCount);
+        iterator.skipTable = table;
+        iterator.skipCount = count;
+        iterator.blockBounds = blockBounds;
+        return iterator;
+    }
+
+    /**
+     *
+     * @param docFrequency the number of documents of a list
+     * @return the number of postings between two skip pointers of the list
+     */
+    public static int skipInterval(int docFrequency) {
+        return Math.max(MIN_SKIP_INTERVAL, (int) Math.sqrt(docFrequency));
+    }
+
+    /**
+     *
+     * @param docFrequency the number of documents of a list
+     * @return the number of skip pointers of the list
+     */
+    public static int skipCount(int docFrequency) {
+        return docFrequency == 0 ? 0 : (docFrequency - 1) / skipInterval(docFrequency);
+    }
+
+    public int nextDoc() {
+        if (read >= docFrequency) return docId = NO_MORE_DOCS;
+
+        docId = (read == 0 ? 0 : docId) + VariableByte.readInt(data);
+        occurrences = VariableByte.readInt(data);
+        read++;
+        return docId;
+    }
+
+    /**
+     * <p>
+     * It jumps to the last skip pointer whose previous document is before the<br />
+     * target and then it decodes the postings until the target.
+     * </p>
+     */
+    public int advance(int target) {
+        if (docId >= target) return docId;
+
+        if (skipCount > 0) {
+            if (skipDocIds == null) this.decodeSkips();
+
+            int skip = -1;
+            for (int i = read / skipInterval; i < skipCount && skipDocIds[i] < target; i++)
+                skip = i;
+            if (skip >= 0) {
+                data.position(skipPositions[skip]);
+                docId = skipDocIds[skip];
+                read = (skip + 1) * skipInterval;
+            }
+        }
+
+        while (docId < target)
+            this.nextDoc();
+        return docId;
+    }
+
+    /**
+     * <p>
+     * Moves over the blocks whose last document is before the target. The skip<br />
+     * pointers are decoded, but the postings are not.
+     * </p>
+     */
+    public int advanceBlock(int target) {
+        if (skipCount == 0) return NO_MORE_DOCS;
+        if (skipDocIds == null) this.decodeSkips();
+
+        while (block < skipCount && skipDocIds[block] < target)
+            block++;
+        return (block < skipCount) ? skipDocIds[block] : NO_MORE_DOCS;
+    }
+
+    public double blockMaxWeight() {
+        return this.blockMaxWeight(docFrequency, docCount);
+    }
+
+    /**
+     *
+     * @param docFrequency the number of documents of the word
+     * @param docCount the number of documents in the index
+     * @return the max weight of the current block's documents with these numbers
+     */
+    double blockMaxWeight(int docFrequency, int docCount) {
+        if (blockOccurrences == null) return this.maxWeight(docFrequency, docCount);
+
+        return Index.weight(blockOccurrences[block], blockMaxFrequencies[block], docFrequency, docCount);
+    }
+
+    /**
+     * <p>Decodes the skip pointers of an <code>IndexFile</code> list.</p>
+     */
+    private void decodeSkips() {
+        skipDocIds = new int[skipCount];
+        skipPositions = new int[skipCount];
+        if (blockBounds) {
+            blockOccurrences = new int[skipCount + 1];
+            blockMaxFrequencies = new int[skipCount + 1];
+        }
+        int lastDocId = 0, lastPosition = 0;
+        for (int i = 0; i < skipCount; i++) {
+            skipDocIds[i] = lastDocId += VariableByte.readInt(skipTable);
+            skipPositions[i] = lastPosition += VariableByte.readInt(skipTable);
+            if (blockBounds) {
+                blockOccurrences[i] = VariableByte.readInt(skipTable);
+                blockMaxFrequencies[i] = VariableByte.readInt(skipTable);
+            }
+        }
+        if (blockBounds) {
+            blockOccurrences[skipCount] = VariableByte.readInt(skipTable);
+            blockMaxFrequencies[skipCount] = VariableByte.readInt(skipTable);
+        }
+        skipTable = null;
+    }
+
+    public int docId() {
+        return docId;
+    }
+
+    public int occurrences() {
+        return occurrences;
+    }
+
+    public double weight() {
+        return Index.weight(occurrences, stats.getMaxFrequency(docId), docFrequency, docCount);
+    }
+
+    public double maxWeight() {
+        return this.maxWeight(docFrequency, docCount);
+    }
+
+    /**
+     *
+     * @param docFrequency the number of documents of the word
+     * @param docCount the number of documents in the index
+     * @return the max weight of the list's documents with these numbers
+     */
+    double maxWeight(int docFrequency, int docCount) {
+        return Index.weight(boundOccurrences, boundMaxFrequency, docFrequency, docCount);
+    }
+
+    /**
+     * <p>Sets the posting with the max normalized frequency.</p>
+     *
+     * @param occurrences the posting's frequency
+     * @param maxFrequency the posting's document's max frequency
+     */
+    void setBound(int occurrences, int maxFrequency) {
+        this.boundOccurrences = occurrences;
+        this.boundMaxFrequency = maxFrequency;
+    }
+
+    /**
+     * <p>Sets the postings with the max normalized frequency of the blocks.</p>
+     *
+     * @param occurrences the postings' frequencies, null if they are not known
+     * @param maxFrequencies the postings' documents' max frequencies
+     */
+    void setBlockBounds(int[] occurrences, int[] maxFrequencies) {
+        this.blockOccurrences = occurrences;
+        this.blockMaxFrequencies = maxFrequencies;
+    }
+
+    public int documentFrequency() {
+        return docFrequency;
+    }
+}
@@ -0,0 +1,79 @@
+package ixm;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class keeps the IDs of the words of every document of an <code>Index</code>,<br />
+ * in primitive arrays by document ID. With it a document is removed from the<br />
+ * lists of its own words only, instead of the lists of all the words.
+ * </p>
+ *
+ * @see Index
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class ForwardIndex implements Serializable {
+    private int[][] terms;  // the IDs of the words of every document
+    private int[] counts;   // the number of the words of every document
+
+    /**
+     * <p>Initializes an empty forward index.</p>
+     */
+    public ForwardIndex() {
+        terms = new int[16][];
+        counts = new int[16];
+    }
+
+    /**
+     * <p>Adds a word to a document.</p>
+     *
+     * @param docId the document's ID
+     * @param termId the word's ID
+     */
+    public void add(int docId, int termId) {
+        if (docId >= terms.length) {
+            int capacity = Math.max(terms.length * 2, docId + 1);
+            terms = Arrays.copyOf(terms, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        int[] docTerms = terms[docId];
+        if (docTerms == null)
+            docTerms = terms[docId] = new int[8];
+        else if (counts[docId] == docTerms.length)
+            docTerms = terms[docId] = Arrays.copyOf(docTerms, docTerms.length * 2);
+        docTerms[counts[docId]++] = termId;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return a new array with the IDs of the document's words
+     */
+    public int[] getTerms(int docId) {
+        if (docId < 0 || docId >= terms.length || terms[docId] == null) return new int[0];
+
+        return Arrays.copyOf(terms[docId], counts[docId]);
+    }
+
+    /**
+     * <p>Removes all the words of a document.</p>
+     *
+     * @param docId the document's ID
+     * @return the IDs of the document's words
+     */
+    public int[] remove(int docId) {
+        int[] docTerms = this.getTerms(docId);
+        if (docId >= 0 && docId < terms.length) {
+            terms[docId] = null;
+            counts[docId] = 0;
+        }
+
+        return docTerms;
+    }
+}
@@ -2,26 +2,63 @@ package ixm;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * <p>
  * This class contains information about a collection's catalogue. It is a kind<br />
  * of <code>HashMap</code> that has words as <code>keys</code> and <code>DocumentList</code><br />
- * as values.
+ * as values.<br />
+ * <br />
+ * The words are also kept in order in a <code>TermDictionary</code>, for the words with a<br />
+ * prefix. It is built by the first query that needs it. After that the new<br />
+ * words are kept in a small sorted set and the removed words are left out by<br />
+ * the queries, until the changes are merged into a new dictionary in one pass.<br />
+ * <br />
+ * A document can be deleted logically with <code>deleteDoc</code>. Its ID becomes a<br />
+ * tombstone that the queries skip, and its postings are purged in a batch by<br />
+ * <code>compact</code>.<br />
+ * <br />
+ * A <code>snapshot</code> keeps the index as it is at a moment, so that it can be<br />
+ * written to a file by another thread while this index changes. The snapshot<br />
+ * shares the posting lists with this index and a shared list is copied before<br />
+ * it is changed (copy-on-write), by this index or by the snapshot.
  * </p>
  *
  * @see IndexHandle
  * @see DocumentList
  * @see DocumentInfo
+ * @see DocumentDictionary
+ * @see DocumentStatistics
+ * @see ForwardIndex
+ * @see TermDictionary
+ * @see IndexReader
  *
  * @author Evripidis Gkanias
  * @author Stergios Giannouloudis
  */
-public class Index extends HashMap<String,DocumentList> implements Serializable {
+public class Index extends HashMap<String,DocumentList> implements IndexReader, Serializable {
+    public static final double COMPACTION_THRESHOLD = 0.2;  // the fraction of deleted documents that starts a compaction
+
     private String name;                    // the index's name
-    private ArrayList<String> docs;         // a list with the contained documents
-    private ArrayList<Integer> docsMaxFreq; // a list with the max frequency for every document
+    private DocumentDictionary docs;        // the dictionary with the contained documents
+    private DocumentStatistics docsStats;   // the statistics of every document by ID
+    private HashSet<String> dirtyWords;     // the words whose weights have to be computed again
+    private boolean weightsDirty;           // shows if every weight has to be computed again
+    private ArrayList<String> terms;        // the words by their IDs, null for a removed word
+    private ForwardIndex forward;           // the IDs of the words of every document
+    private BitSet tombstones;              // the deleted documents that are still in the posting lists
+    private int tombstoneCount;             // the number of the tombstones
+    private transient volatile TermDictionary dictionary;   // the sorted words, null until a query needs them
+    private TreeSet<String> newWords;       // the words that have been put since the dictionary was built
+    private int removedWords;               // the number of words removed since the dictionary was built
+    private boolean snapshot;               // shows if the index is a snapshot, whose weights are not computed
 
     /**
      * <p>Initializes the private fields</p>
@@ -31,8 +68,70 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
     public Index(String name) {
         super();
         this.name = name;
-        docs = new ArrayList();
-        docsMaxFreq = new ArrayList();
+        docs = new DocumentDictionary();
+        docsStats = new DocumentStatistics();
+        dirtyWords = new HashSet<String>();
+        weightsDirty = false;
+        terms = new ArrayList<String>();
+        forward = new ForwardIndex();
+        tombstones = new BitSet();
+        tombstoneCount = 0;
+        newWords = new TreeSet<String>(TermDictionary.ORDER);
+        removedWords = 0;
+    }
+
+    /**
+     * <p>
+     * Makes a snapshot of an index. The posting lists are shared and every other<br />
+     * structure is copied, except for the forward index, which the snapshot builds<br />
+     * from its lists when it needs it.
+     * </p>
+     *
+     * @param live the index
+     */
+    private Index(Index live) {
+        super(Math.max(16, (int) (live.size() / 0.75f) + 1));
+        this.name = live.name;
+        docs = new DocumentDictionary(live.docs);
+        docsStats = new DocumentStatistics(live.docsStats);
+        dirtyWords = new HashSet<String>();
+        weightsDirty = true;
+        terms = new ArrayList<String>(live.terms);
+        forward = null;
+        tombstones = (BitSet) live.tombstones.clone();
+        tombstoneCount = live.tombstoneCount;
+        dictionary = live.dictionary;
+        newWords = new TreeSet<String>(live.newWords);
+        removedWords = live.removedWords;
+        snapshot = true;
+
+        for (Map.Entry<String,DocumentList> entry : live.entrySet()) {
+            entry.getValue().setShared();
+            super.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * <p>
+     * Makes a snapshot of the index. It takes time for the words and the documents,<br />
+     * not for the postings, and after it the changes of this index don't change the<br />
+     * snapshot. The weights of the snapshot are not computed and they are the ones<br />
+     * of this index, until the lists are copied, so the snapshot is meant to be<br />
+     * written (see <code>IndexFile</code>) and not queried.
+     * </p>
+     *
+     * @return the snapshot of the index
+     */
+    public Index snapshot() {
+        return new Index(this);
+    }
+
+    /**
+     *
+     * @return shows if the index is a snapshot of another index
+     */
+    public boolean isSnapshot() {
+        return snapshot;
     }
 
     /**
@@ -47,29 +146,69 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
      * @return a value that shows if the document has been added successfully
      */
     public boolean put(String word, String docName) {
+        int docId = docs.getId(docName);
+        if (docId >= 0 && tombstones.get(docId)) this.purge(docId);
 
-        if (this.get(word) == null) {
-            super.put(word, new DocumentList());
-        }
-        this.get(word).add(docName);
-        if (!docs.contains(docName))
-            docs.add(docName);
-        int dIndex;
-        if ((dIndex = this.get(word).indexOf(docName)) >= 0) {
-            DocumentInfo dInfo = this.get(word).get(dIndex);
-            int maxFreq;
-            try {
-                maxFreq = Math.max(dInfo.GetOccurences(), docsMaxFreq.get(docs.indexOf(docName)));
-            } catch (Exception ex ) {
-                docsMaxFreq.add(0);
-                maxFreq = dInfo.GetOccurences();
-            }
-            docsMaxFreq.set(docs.indexOf(docName),maxFreq);
+        return this.put(word, docs.add(docName));
+    }
+
+    /**
+     * <p>
+     * It puts a pair of word and document ID. The document must have been added<br />
+     * to the <code>DocumentDictionary</code> of this index.
+     * </p>
+     *
+     * @param word the word that has been found in the document
+     * @param docId the document's ID
+     * @return a value that shows if the document has been added successfully
+     */
+    public boolean put(String word, int docId) {
+        DocumentList list = this.writable(word);
+
+        if (list == null) {
+            list = new DocumentList();
+            this.put(word, list);
         }
+        int maxFreq = docsStats.getMaxFrequency(docId);
+        list.add(docId);
+        DocumentInfo dInfo = list.get(list.indexOf(docId));
+        docsStats.addOccurrence(docId, dInfo.GetOccurences());
+        if (dInfo.GetOccurences() == 1) this.forward().add(docId, list.getTermId());
+
+        // a new max frequency (or a new document) changes the weights of other words too
+        if (docsStats.getMaxFrequency(docId) != maxFreq)
+            weightsDirty = true;
+        else
+            dirtyWords.add(word);
 
         return true;
     }
 
+    /**
+     * <p>
+     * Puts a word with its documents' list. The word takes a new ID and its<br />
+     * documents are added to the forward index.
+     * </p>
+     *
+     * @param word the word
+     * @param list the word's documents' list
+     * @return the previous list of the word or null
+     */
+    @Override
+    public DocumentList put(String word, DocumentList list) {
+        ForwardIndex forward = this.forward();
+        DocumentList previous = super.put(word, list);
+        if (previous != null) terms.set(previous.getTermId(), null);
+        else this.wordsChanged(word);
+
+        list.setTermId(terms.size());
+        terms.add(word);
+        for (DocumentInfo dInfo : list)
+            forward.add(dInfo.GetDocumentId(), list.getTermId());
+
+        return previous;
+    }
+
     /**
      * <p>It puts many documents to a word using the simple <code>put</code> method.</p>
      *
@@ -103,71 +242,214 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
     /**
      * <p>
      * Removes a word from the <code>Index</code> and updates the documents' list,<br />
-     * the documents' max frequence and the weights.
+     * the documents' max frequence and the weights. A document's max frequency is<br />
+     * found again, from the document's own words only, when the removed word was<br />
+     * the last one with it.
      * </p>
      *
      * @param word the word that is going to be removed
      * @return the removed word's documents' list
      */
     public DocumentList remove(String word) {
-        for (DocumentInfo dInfo : this.get(word)) {
-            int maxFreq = 0;
-            int dIndex = docs.indexOf(dInfo.GetDocumentName());
-
-            if (dInfo.GetOccurences() == docsMaxFreq.get(dIndex)) {
-                String[] words = new String[this.size()];
-                words = this.keySet().toArray(words);
-                boolean done = false;
-                for (String w : words) {
-                    int docIndex = this.get(w).indexOf(dInfo.GetDocumentName());
-                    if (!w.equals(word) && docIndex > -1) {
-                        maxFreq = Math.max(maxFreq, this.get(w).get(docIndex).GetOccurences());
-                        done = true;
-                    }
-                }
-                if (done)
-                    docsMaxFreq.set(dIndex,maxFreq);
-                else {
-                    docs.remove(dIndex);
-                    docsMaxFreq.remove(dIndex);
+        DocumentList removed = this.get(word);
+        for (DocumentInfo dInfo : removed) {
+            docsStats.removeFromNorm(dInfo.GetDocumentId(), dInfo.GetWeight());
+            int docId = dInfo.GetDocumentId();
+
+            if (docsStats.removeTerm(docId, dInfo.GetOccurences())) {
+                if (!this.updateMaxFrequency(docId, removed.getTermId())) {
+                    docs.remove(docId);
+                    docsStats.clear(docId);
+                    this.forward().remove(docId);
                 }
+                weightsDirty = true;
             }
         }
 
         DocumentList list = super.remove(word);
+        dirtyWords.remove(word);
+        this.wordsChanged(null);
+        terms.set(list.getTermId(), null);
 
         return list;
     }
 
+    /**
+     * <p>Finds a document's max frequency and the number of its words that have it.</p>
+     *
+     * @param docId the document's ID
+     * @param removedTermId the ID of the word that is being removed
+     * @return a value that shows if the document has other words
+     */
+    private boolean updateMaxFrequency(int docId, int removedTermId) {
+        int maxFreq = 0, count = 0;
+
+        for (int termId : this.forward().getTerms(docId)) {
+            String word = terms.get(termId);
+            if (termId == removedTermId || word == null) continue;
+
+            DocumentList list = this.get(word);
+            int frequency = list.get(list.indexOf(docId)).GetOccurences();
+            if (frequency > maxFreq) {
+                maxFreq = frequency;
+                count = 1;
+            } else if (frequency == maxFreq)
+                count++;
+        }
+        if (count == 0) return false;
+
+        docsStats.setMaxFrequency(docId, maxFreq, count);
+        return true;
+    }
+
     /**
      * <p>
-     * Removes a document from all the words. If after this the word hasn't got any<br />
-     * documents, the word will also be removed.
+     * Removes a document from all its words, which are found in the forward index.<br />
+     * If after this a word hasn't got any documents, the word will also be removed.
      * </p>
      *
      * @param docName the document's name
      * @return a value that shows if the document has been removed from all the words
      */
     public long removeDoc(String docName) {
-        String[] words = new String[this.size()];
-        words = this.keySet().toArray(words);
-        long counter = 0;
-        try {
-            if (this.docsMaxFreq.remove(this.docs.indexOf(docName)) == null)
-                return -1;
-            if (!this.docs.remove(docName))
-                return -1;
-        } catch (Exception ex) {
+        int docId = this.docs.getId(docName);
+        if (docId >= 0 && tombstones.get(docId)) {
+            // a deleted document is purged, so that its ID can be used again
+            this.purge(docId);
             return -1;
         }
-        for (String word : words) {
-            if (this.get(word).remove(docName)) counter++;
-            if (this.get(word).size() == 0) this.remove(word);
+        if (!this.docs.remove(docId))
+            return -1;
+
+        return this.purge(docId);
+    }
+
+    /**
+     * <p>Removes a document that is not in the dictionary from all its words.</p>
+     *
+     * @param docId the document's ID
+     * @return the number of words that contained the document
+     */
+    private long purge(int docId) {
+        long counter = 0;
+        if (tombstones.get(docId)) {
+            tombstones.clear(docId);
+            tombstoneCount--;
+        }
+        this.docsStats.clear(docId);
+        this.weightsDirty = true;
+        for (int termId : this.forward().remove(docId)) {
+            // the words that have been removed keep their IDs in the forward index
+            String word = terms.get(termId);
+            if (word == null) continue;
+
+            DocumentList list = this.writable(word);
+            if (list.removeDoc(docId)) counter++;
+            if (list.size() == 0) this.remove(word);
         }
 
         return counter;
     }
 
+    /**
+     * <p>
+     * Deletes a document logically. The document is removed from the dictionary<br />
+     * and its ID becomes a tombstone, but its postings, the documents' frequencies<br />
+     * and the weights don't change, so the delete takes constant time. When the<br />
+     * tombstones are more than <code>COMPACTION_THRESHOLD</code> of the documents, the<br />
+     * index is compacted.
+     * </p>
+     *
+     * @param docName the document's name
+     * @return a value that shows if the document has been deleted
+     */
+    public boolean deleteDoc(String docName) {
+        int docId = docs.getId(docName);
+        if (!docs.remove(docId)) return false;
+
+        tombstones.set(docId);
+        tombstoneCount++;
+        if (tombstoneCount > COMPACTION_THRESHOLD * (docs.size() + tombstoneCount))
+            this.compact();
+
+        return true;
+    }
+
+    /**
+     * <p>
+     * Purges the postings of the deleted documents in one pass over the posting<br />
+     * lists and marks every weight as out of date.
+     * </p>
+     */
+    public void compact() {
+        if (tombstoneCount == 0) return;
+
+        String[] words = this.keySet().toArray(new String[this.size()]);
+        for (String word : words) {
+            DocumentList list = this.writable(word);
+            if (list.removeDocs(tombstones) > 0 && list.size() == 0)
+                this.remove(word);
+        }
+        for (int docId = tombstones.nextSetBit(0); docId >= 0; docId = tombstones.nextSetBit(docId + 1)) {
+            docsStats.clear(docId);
+            this.forward().remove(docId);
+        }
+
+        tombstones.clear();
+        tombstoneCount = 0;
+        weightsDirty = true;
+        if (dictionary != null && (!newWords.isEmpty() || removedWords > 0)) this.mergeWords();
+    }
+
+    /**
+     *
+     * @return the number of the deleted documents that have not been purged
+     */
+    public int getTombstoneCount() {
+        return tombstoneCount;
+    }
+
+    /**
+     * <p>
+     * Merges a partial index into this index. The documents of the partial index<br />
+     * take IDs in their order, after the documents of this index, so merging the<br />
+     * partial indexes of a collection in order gives the same index as inserting<br />
+     * the collection's documents one by one. A document that is already in this<br />
+     * index is replaced.
+     * </p>
+     *
+     * @param other the partial index
+     */
+    public void merge(Index other) {
+        DocumentDictionary otherDocs = other.getDocumentDictionary();
+        DocumentStatistics otherStats = other.getDocumentStatistics();
+        int[] ids = new int[otherDocs.capacity()];
+
+        for (int id = 0; id < ids.length; id++) {
+            if (!otherDocs.contains(id)) continue;
+
+            String docName = otherDocs.getName(id);
+            this.removeDoc(docName);
+            ids[id] = docs.add(docName);
+            docsStats.copy(otherStats, id, ids[id]);
+        }
+
+        ForwardIndex forward = this.forward();
+        for (String word : other.keySet()) {
+            DocumentList list = this.writable(word);
+            if (list == null) {
+                list = new DocumentList();
+                this.put(word, list);
+            }
+            for (DocumentInfo dInfo : other.get(word)) {
+                list.add(ids[dInfo.GetDocumentId()], dInfo.GetOccurences());
+                forward.add(ids[dInfo.GetDocumentId()], list.getTermId());
+            }
+        }
+
+        weightsDirty = true;
+    }
+
     /**
      * <p>
      * Removes the words that are very frequent. A word is very frequent when over<br />
@@ -176,6 +458,7 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
      */
     public void removeFrequentWords() {
         double threshold = 0.80;
+        this.compact();
         String[] words = this.keySet().toArray(new String[this.size()]);
 
         for (String word : words) {
@@ -188,15 +471,95 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
     }
 
     /**
-     * <p>Updates the weight of every document's word.</p>
+     * <p>
+     * Updates the weights that are out of date and the documents' norms. The<br />
+     * changes of the index only mark the words as dirty, so a batch of inserts<br />
+     * computes the weights once. If the number of documents or a document's max<br />
+     * frequency has changed, every weight is computed again. In another case only<br />
+     * the dirty words are computed. If nothing has changed it does nothing.
+     * </p>
      */
     public void updateWeights() {
-        String[] words = this.keySet().toArray(new String[this.size()]);
-        for (String word : words) {
-            for (DocumentInfo doc : this.get(word)) {
-                this.computeWeight(word,doc.GetDocumentName());
+        // the weights of a snapshot are in the lists that it shares with its index
+        if (snapshot) return;
+
+        if (weightsDirty) {
+            docsStats.resetNorms();
+            for (DocumentList list : this.values()) {
+                list.resetMaxWeights();
+                for (int i = 0; i < list.size(); i++) {
+                    DocumentInfo doc = list.get(i);
+                    this.computeWeight(list, i);
+                    docsStats.addToNorm(doc.GetDocumentId(), doc.GetWeight());
+                }
+            }
+        } else {
+            for (String word : dirtyWords) {
+                DocumentList list = this.get(word);
+                list.resetMaxWeights();
+                for (int i = 0; i < list.size(); i++) {
+                    DocumentInfo doc = list.get(i);
+                    docsStats.removeFromNorm(doc.GetDocumentId(), doc.GetWeight());
+                    this.computeWeight(list, i);
+                    docsStats.addToNorm(doc.GetDocumentId(), doc.GetWeight());
+                }
             }
         }
+
+        weightsDirty = false;
+        dirtyWords.clear();
+    }
+
+    /**
+     * <p>
+     * Finds a word's list to change it. A list that is shared with a snapshot is<br />
+     * replaced by a copy first.
+     * </p>
+     *
+     * @param word the word
+     * @return the word's list that can be changed or null if the word is not in the index
+     */
+    private DocumentList writable(String word) {
+        DocumentList list = this.get(word);
+        if (list == null || !list.isShared()) return list;
+
+        list = list.copy();
+        super.put(word, list);
+        return list;
+    }
+
+    /**
+     * <p>
+     * Finds the forward index. A snapshot builds its forward index from its lists<br />
+     * the first time that it is needed.
+     * </p>
+     *
+     * @return the forward index
+     */
+    private ForwardIndex forward() {
+        if (forward == null) {
+            forward = new ForwardIndex();
+            for (DocumentList list : this.values())
+                for (DocumentInfo dInfo : list)
+                    forward.add(dInfo.GetDocumentId(), list.getTermId());
+        }
+
+        return forward;
+    }
+
+    /**
+     * <p>Marks every weight as out of date.</p>
+     */
+    void invalidateWeights() {
+        weightsDirty = true;
+    }
+
+    /**
+     *
+     * @return a value that shows if there are weights that are out of date
+     */
+    public boolean isDirty() {
+        return weightsDirty || !dirtyWords.isEmpty();
     }
 
     /**
@@ -206,41 +569,287 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
      * @param document the document
      */
     public void computeWeight(String word, String document) {
-        double maxf = (double) this.docsMaxFreq.get(this.docs.indexOf(document));
-        double wordf = 0.0;
-        double totalDocNumber = 0.0;
-        double idf = 0.0;
+        this.computeWeight(word, docs.getId(document));
+    }
+
+    /**
+     * <p>Computes the weight of a document's word.</p>
+     *
+     * @param word the word of the document
+     * @param docId the document's ID
+     */
+    public void computeWeight(String word, int docId) {
+        DocumentList list = this.get(word);
         int documentIndex = -1;
 
-        //FIND WORDS FREQUENCY IN THE DOCUMENT
-        if ((documentIndex = this.get(word).indexOf(document)) >= 0) {
-            wordf = (double) this.get(word).get(documentIndex).GetOccurences();
-        } else {
-            return;
+        //FIND THE DOCUMENT IN THE WORD'S LIST
+        if (list != null && (documentIndex = list.indexOf(docId)) >= 0) {
+            this.computeWeight(list, documentIndex);
         }
+    }
+
+    /**
+     * <p>
+     * Computes the weight of a document's word. The max frequency of the document<br />
+     * is read from the <code>DocumentStatistics</code>. The max weights of the list<br />
+     * and of the document's block are raised if they are less than the new weight.<br />
+     * The tombstones are counted both in the list and in the documents until the<br />
+     * next compaction, so the word's frequency is never more than the number of<br />
+     * documents and a delete doesn't change the weights.
+     * </p>
+     *
+     * @param list the word's documents' list
+     * @param position the document's position in the list
+     */
+    private void computeWeight(DocumentList list, int position) {
+        DocumentInfo dInfo = list.get(position);
+        if (!docs.contains(dInfo.GetDocumentId())) return;
+
+        dInfo.SetWeight(weight(dInfo.GetOccurences(), docsStats.getMaxFrequency(dInfo.GetDocumentId()),
+                list.size(), docs.size() + tombstoneCount));
+        list.raiseMaxWeights(position, dInfo.GetWeight());
+    }
+
+    /**
+     * <p>
+     * Computes the weight of a word in a document. It is the word's frequency,<br />
+     * normalized by the document's max frequency, times the word's idf, normalized<br />
+     * by the max idf.
+     * </p>
+     *
+     * @param frequency the word's frequency in the document
+     * @param maxFrequency the document's max frequency
+     * @param docFrequency the number of documents that contain the word
+     * @param docCount the number of documents in the index
+     * @return the weight
+     */
+    public static double weight(int frequency, int maxFrequency, int docFrequency, int docCount) {
+        double maxf = (double) maxFrequency;
+        double wordf = (double) frequency;
+        double totalDocNumber = (double) docCount;
 
         double nf = wordf/maxf;
 
-        totalDocNumber = (double) docs.size();
-        //numberOfDocsContainWord = wdList.size();
-        if (this.get(word) != null){
-            double wordsIndexSize = (double) this.get(word).size();
-            idf = Math.log(totalDocNumber / wordsIndexSize);
-        } else {
-            idf = 0.0;
-        }
+        double wordsIndexSize = (double) docFrequency;
+        double idf = Math.log(totalDocNumber / wordsIndexSize);
 
         double nidf = idf/Math.log(totalDocNumber);
 
-        double finalWeight = nf*nidf;
-        this.get(word).get(documentIndex).SetWeight(finalWeight);
+        return nf*nidf;
     }
 
     /**
      *
-     * @return an <code>ArrayList</code> of the implemented documents in the <code>Index</code>
+     * @return a new <code>ArrayList</code> of the implemented documents in the <code>Index</code>
      */
     public ArrayList<String> getDocNames() {
+        return docs.getNames();
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the document's name
+     */
+    public String getDocName(int docId) {
+        return docs.getName(docId);
+    }
+
+    /**
+     *
+     * @param docName the document's name
+     * @return the document's ID or -1 if the document has never been added
+     */
+    public int getDocId(String docName) {
+        return docs.getId(docName);
+    }
+
+    /**
+     *
+     * @return the number of documents in the <code>Index</code>
+     */
+    public int getDocCount() {
+        return docs.size();
+    }
+
+    /**
+     *
+     * @return the number of document IDs of the <code>Index</code>
+     */
+    public int getMaxDocId() {
+        return docs.capacity();
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return a value that shows if the document is in the <code>Index</code>
+     */
+    public boolean containsDoc(int docId) {
+        return docs.contains(docId);
+    }
+
+    /**
+     *
+     * @param word the word
+     * @return the number of documents that contain the word
+     */
+    public int getDocFrequency(String word) {
+        DocumentList list = this.get(word);
+        if (list == null) return 0;
+        if (tombstoneCount == 0) return list.size();
+
+        int live = 0;
+        for (DocumentInfo dInfo : list)
+            if (!tombstones.get(dInfo.GetDocumentId())) live++;
+        return live;
+    }
+
+    /**
+     * <p>
+     * Builds the dictionary from all the words the first time that a query needs<br />
+     * it. The queries may build it at the same time under the read lock. They<br />
+     * build the same dictionary from the same words, and the field is volatile<br />
+     * and the dictionary's fields are final, so every thread sees a whole<br />
+     * dictionary. After that only the changes of the index change it.
+     * </p>
+     *
+     * @return the words of the <code>Index</code> in order, when the dictionary was built
+     */
+    private TermDictionary getTermDictionary() {
+        if (dictionary == null) {
+            String[] words = this.keySet().toArray(new String[this.size()]);
+            Arrays.sort(words, TermDictionary.ORDER);
+            dictionary = new TermDictionary(words);
+        }
+        return dictionary;
+    }
+
+    /**
+     * <p>
+     * Keeps the sorted words up to date after a word has been put or removed. A<br />
+     * new word is put to the sorted set of the new words and a removed word is<br />
+     * only counted. When the changes are more than an eighth of the dictionary,<br />
+     * they are merged into a new dictionary. Nothing is kept before a query has<br />
+     * built the dictionary.
+     * </p>
+     *
+     * @param word the new word or null if a word has been removed
+     */
+    private void wordsChanged(String word) {
+        if (dictionary == null) return;
+
+        if (word != null) newWords.add(word);
+        else removedWords++;
+        if (newWords.size() + removedWords > dictionary.size() / 8 + TermDictionary.BLOCK_SIZE)
+            this.mergeWords();
+    }
+
+    /**
+     * <p>
+     * Merges the new words into a new dictionary without the removed words. The<br />
+     * dictionary and the new words are already sorted, so they are merged in one<br />
+     * pass.
+     * </p>
+     */
+    private void mergeWords() {
+        ArrayList<String> words = this.sortedWords("");
+        dictionary = new TermDictionary(words.toArray(new String[words.size()]));
+        newWords.clear();
+        removedWords = 0;
+    }
+
+    /**
+     *
+     * @param prefix the prefix
+     * @return the words of the dictionary and the new words that start with the prefix, in order
+     */
+    private ArrayList<String> sortedWords(String prefix) {
+        ArrayList<String> built = this.getTermDictionary().prefix(prefix);
+        Iterator<String> added = newWords.tailSet(prefix).iterator();
+        ArrayList<String> words = new ArrayList<String>();
+
+        int i = 0;
+        String next = nextWord(added, prefix);
+        while (i < built.size() || next != null) {
+            int cmp = (next == null) ? -1 : (i == built.size()) ? 1 : TermDictionary.ORDER.compare(built.get(i), next);
+            String word = (cmp <= 0) ? built.get(i++) : next;
+            if (cmp >= 0) next = nextWord(added, prefix);
+            // a removed word is left out, and a word that has been put again is in both
+            if (this.containsKey(word)) words.add(word);
+        }
+        return words;
+    }
+
+    /**
+     *
+     * @param added the iterator over the new words
+     * @param prefix the prefix
+     * @return the next new word if it starts with the prefix, or else null
+     */
+    private static String nextWord(Iterator<String> added, String prefix) {
+        if (!added.hasNext()) return null;
+
+        String word = added.next();
+        return word.startsWith(prefix) ? word : null;
+    }
+
+    /**
+     *
+     * @param prefix the prefix
+     * @return the words that start with the prefix, in order
+     */
+    public ArrayList<String> getWords(String prefix) {
+        ArrayList<String> words = this.sortedWords(prefix);
+        if (tombstoneCount == 0) return words;
+
+        // the words of the deleted documents only are purged by the next compaction
+        ArrayList<String> live = new ArrayList<String>();
+        for (String word : words)
+            if (this.getDocFrequency(word) > 0) live.add(word);
+        return live;
+    }
+
+    /**
+     *
+     * @param word the word
+     * @return an iterator over the word's documents' list or null if the word is not in the <code>Index</code>
+     */
+    public PostingIterator getPostings(String word) {
+        DocumentList list = this.get(word);
+        if (list == null) return null;
+
+        return tombstoneCount == 0 ? list.postings() : new LivePostings(word, list.postings());
+    }
+
+    /**
+     *
+     * @param word the word
+     * @param docId the document's ID
+     * @return the stored weight of the word in the document, or 0 if the document doesn't contain the word
+     */
+    public double getWeight(String word, int docId) {
+        DocumentList list = this.get(word);
+        int docIndex;
+        if (docId >= 0 && tombstones.get(docId)) return 0;
+        if (list == null || (docIndex = list.indexOf(docId)) < 0) return 0;
+
+        return list.get(docIndex).GetWeight();
+    }
+
+    /**
+     *
+     * @return the <code>DocumentStatistics</code> of the <code>Index</code>
+     */
+    public DocumentStatistics getDocumentStatistics() {
+        return docsStats;
+    }
+
+    /**
+     *
+     * @return the <code>DocumentDictionary</code> of the <code>Index</code>
+     */
+    public DocumentDictionary getDocumentDictionary() {
         return docs;
     }
 
@@ -267,13 +876,86 @@ public class Index extends HashMap<String,DocumentList> implements Serializable
         words = this.keySet().toArray(words);
 
         for (String word : words) {
+            DocumentList list = this.get(word);
             sb.append("\"");
             sb.append(word);
-            sb.append("\" => ");
-            sb.append(this.get(word).toString());
-            sb.append("\n");
+            sb.append("\" => [");
+            sb.append(list.getOccurrences());
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) sb.append(", ");
+                else sb.append(" : ");
+                sb.append("(");
+                sb.append(docs.getName(list.get(i).GetDocumentId()));
+                sb.append(", ");
+                sb.append(list.get(i).GetOccurences());
+                sb.append(")");
+            }
+            sb.append("]\n");
         }
 
         return sb.toString();
     }
+
+    /**
+     * <p>A <code>PostingIterator</code> that skips the deleted documents.</p>
+     */
+    private class LivePostings implements PostingIterator {
+        private String word;                // the list's word
+        private PostingIterator postings;   // the iterator over the whole list
+        private int docFrequency = -1;      // the number of live documents, -1 until it is counted
+
+        /**
+         *
+         * @param word the list's word
+         * @param postings the iterator over the whole list
+         */
+        LivePostings(String word, PostingIterator postings) {
+            this.word = word;
+            this.postings = postings;
+        }
+
+        public int nextDoc() {
+            int docId;
+            do {
+                docId = postings.nextDoc();
+            } while (docId != NO_MORE_DOCS && tombstones.get(docId));
+            return docId;
+        }
+
+        public int advance(int target) {
+            int docId = postings.advance(target);
+            while (docId != NO_MORE_DOCS && tombstones.get(docId))
+                docId = postings.nextDoc();
+            return docId;
+        }
+
+        public int docId() {
+            return postings.docId();
+        }
+
+        public int occurrences() {
+            return postings.occurrences();
+        }
+
+        public double weight() {
+            return postings.weight();
+        }
+
+        public double maxWeight() {
+            return postings.maxWeight();
+        }
+
+        public int advanceBlock(int target) {
+            return postings.advanceBlock(target);
+        }
+
+        public double blockMaxWeight() {
+            return postings.blockMaxWeight();
+        }
+
+        public int documentFrequency() {
+            if (docFrequency < 0) docFrequency = getDocFrequency(word);
+            return docFrequency;
+        }
+    }
 }
@@ -0,0 +1,688 @@
+package ixm;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class writes and reads the index files (<code>.idx</code>) through NIO channels.<br />
+ * The file has a fixed size header and three sections:
+ * </p>
+ * <ul>
+ * <li><b>Document table:</b> the index's name and, for every document in ID order,<br />
+ * its name, max frequency, length and number of unique words. The documents<br />
+ * take new dense IDs, so the IDs of removed documents are not kept.</li>
+ * <li><b>Postings:</b> the posting list of every word, in the order of the words.<br />
+ * A posting is the gap from the previous document ID and the word's frequency,<br />
+ * both as <code>VariableByte</code> numbers. The weights are not stored, they are<br />
+ * computed again when the index is opened. Since version 2 every list starts<br />
+ * with its skip pointers (see <code>EncodedPostingIterator</code>): their number and,<br />
+ * if there are any, their size in bytes and the pointers as gaps of the<br />
+ * document ID and the position from the previous pointer. Since version 3 the<br />
+ * skip pointers come after the frequency and the document's max frequency of<br />
+ * the posting with the max normalized frequency, which gives the list's max<br />
+ * weight (see <code>PostingIterator.maxWeight</code>). Since version 4 every skip<br />
+ * pointer is followed by the same pair of the block before it, and the last<br />
+ * pointer also by the pair of the last block (see <code>PostingIterator.blockMaxWeight</code>).</li>
+ * <li><b>Dictionary:</b> the sorted words in blocks of <code>BLOCK_SIZE</code> words.<br />
+ * Every word keeps only the part that is not shared with the previous word of<br />
+ * the block (front coding), its number of documents and the offset and length<br />
+ * of its posting list. After the blocks there is a table with the fixed size<br />
+ * offsets of the blocks, for binary search over the blocks' first words.</li>
+ * </ul>
+ * <p>
+ * An index file is never replaced in place, since a <code>MappedIndex</code> may still<br />
+ * map it. Every write makes a new generation of the file and the newest<br />
+ * generation is the one that is read. A segmented index writes its manifest<br />
+ * as a generation of the file instead (see <code>SegmentFile</code>).
+ * </p>
+ *
+ * @see IndexManager
+ * @see SegmentFile
+ * @see VariableByte
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class IndexFile {
+    public static final int MAGIC = 0x41524553;     // "ARES"
+    public static final int VERSION = 4;            // the version of the format
+    public static final int HEADER_SIZE = 64;       // the header's size in bytes
+    public static final int BLOCK_SIZE = 16;        // the number of words of a dictionary block
+    static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 1 << 16; // the size of the channels' buffers
+
+    /**
+     * <p>
+     * Writes an index to a file. The index is written to a temporary file first,<br />
+     * which becomes the next generation of the file when it is complete. The old<br />
+     * generations are then deleted, if they are not mapped any more.
+     * </p>
+     *
+     * @param index the index
+     * @param path the file's path
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Index index, String path) throws IOException {
+        DocumentDictionary docs = index.getDocumentDictionary();
+        DocumentStatistics stats = index.getDocumentStatistics();
+        File tempFile = new File(path + ".tmp");
+
+        // the contained documents take new dense IDs
+        int[] newIds = new int[docs.capacity()];
+        DocumentStatistics fileStats = new DocumentStatistics();
+        int docCount = 0;
+        for (int id = 0; id < newIds.length; id++) {
+            newIds[id] = docs.contains(id) ? docCount++ : -1;
+            if (newIds[id] >= 0) fileStats.copy(stats, id, newIds[id]);
+        }
+
+        // the words of the deleted documents only are left out
+        ArrayList<String> liveWords = new ArrayList<String>();
+        for (Map.Entry<String,DocumentList> entry : index.entrySet())
+            for (DocumentInfo dInfo : entry.getValue())
+                if (docs.contains(dInfo.GetDocumentId())) {
+                    liveWords.add(entry.getKey());
+                    break;
+                }
+        String[] words = liveWords.toArray(new String[liveWords.size()]);
+        Arrays.sort(words);
+
+        RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            ChannelWriter out = new ChannelWriter(channel, HEADER_SIZE);
+
+            // DOCUMENT TABLE
+            long docTableOffset = out.position();
+            out.putString(index.getName());
+            for (int id = 0; id < newIds.length; id++) {
+                if (newIds[id] < 0) continue;
+                out.putString(docs.getName(id));
+                out.putInt(stats.getMaxFrequency(id));
+                out.putInt(stats.getLength(id));
+                out.putInt(stats.getUniqueTerms(id));
+            }
+
+            // POSTINGS
+            long postingsOffset = out.position();
+            long[] offsets = new long[words.length];
+            int[] lengths = new int[words.length];
+            int[] docFreqs = new int[words.length];
+            for (int i = 0; i < words.length; i++) {
+                offsets[i] = out.position() - postingsOffset;
+                CompressedPostings list = new CompressedPostings();
+                for (DocumentInfo dInfo : index.get(words[i])) {
+                    int docId = newIds[dInfo.GetDocumentId()];
+                    if (docId >= 0) list.add(docId, dInfo.GetOccurences());
+                }
+                list.trim(fileStats);
+                docFreqs[i] = list.getDocFrequency();
+
+                out.putInt(list.getBoundOccurrences());
+                out.putInt(list.getBoundMaxFrequency());
+                out.putInt(list.getSkipCount());
+                if (list.getSkipCount() > 0) {
+                    byte[] skips = new byte[(list.getSkipCount() + 1) * 20];
+                    int length = 0, lastDocId = 0, lastPosition = 0;
+                    for (int skip = 0; skip < list.getSkipCount(); skip++) {
+                        length = VariableByte.writeInt(skips, length, list.getSkipDocId(skip) - lastDocId);
+                        length = VariableByte.writeInt(skips, length, list.getSkipPosition(skip) - lastPosition);
+                        length = VariableByte.writeInt(skips, length, list.getBlockOccurrences(skip));
+                        length = VariableByte.writeInt(skips, length, list.getBlockMaxFrequency(skip));
+                        lastDocId = list.getSkipDocId(skip);
+                        lastPosition = list.getSkipPosition(skip);
+                    }
+                    length = VariableByte.writeInt(skips, length, list.getBlockOccurrences(list.getSkipCount()));
+                    length = VariableByte.writeInt(skips, length, list.getBlockMaxFrequency(list.getSkipCount()));
+                    out.putInt(length);
+                    out.putBytes(skips, 0, length);
+                }
+                out.putBytes(list.getData(), 0, list.getSizeInBytes());
+                lengths[i] = (int) (out.position() - postingsOffset - offsets[i]);
+            }
+
+            // DICTIONARY
+            long dictionaryOffset = out.position();
+            long[] blockOffsets = new long[(words.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+            byte[] previous = new byte[0];
+            for (int i = 0; i < words.length; i++) {
+                byte[] term = words[i].getBytes(UTF8);
+                int shared = 0;
+                if (i % BLOCK_SIZE == 0)
+                    blockOffsets[i / BLOCK_SIZE] = out.position();
+                else
+                    while (shared < previous.length && shared < term.length && previous[shared] == term[shared])
+                        shared++;
+                out.putInt(shared);
+                out.putInt(term.length - shared);
+                out.putBytes(term, shared, term.length - shared);
+                out.putInt(docFreqs[i]);
+                out.putLong(offsets[i]);
+                out.putInt(lengths[i]);
+                previous = term;
+            }
+            long blockIndexOffset = out.position();
+            for (long offset : blockOffsets)
+                out.putFixedLong(offset);
+            out.flush();
+
+            // HEADER
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(docCount);
+            header.putInt(words.length);
+            header.putInt(blockOffsets.length);
+            header.putInt(0);
+            header.putLong(docTableOffset);
+            header.putLong(postingsOffset);
+            header.putLong(dictionaryOffset);
+            header.putLong(blockIndexOffset);
+            header.clear();
+            channel.write(header, 0);
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+
+        commit(tempFile, path);
+        // the segments of an older manifest are not used any more
+        SegmentFile.deleteSegments(path, new HashSet<Long>());
+    }
+
+    /**
+     * <p>
+     * Makes a complete temporary file the next generation of an index file and<br />
+     * deletes the old generations. A new generation never replaces a file that<br />
+     * may still be mapped.
+     * </p>
+     *
+     * @param tempFile the temporary file
+     * @param path the file's path
+     * @throws IOException if the temporary file cannot be moved
+     */
+    static void commit(File tempFile, String path) throws IOException {
+        long generation = currentGeneration(path) + 1;
+        Files.move(tempFile.toPath(), new File(generationPath(path, generation)).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        deleteGenerations(path, generation);
+    }
+
+    /**
+     * <p>
+     * Returns the path of the newest generation of an index file, which is the<br />
+     * one that is read. If there is no generation, it is the path itself.
+     * </p>
+     *
+     * @param path the file's path
+     * @return the path of the file's newest generation
+     */
+    public static String currentPath(String path) {
+        return generationPath(path, Math.max(currentGeneration(path), 0));
+    }
+
+    /**
+     * <p>Checks if an index file has any generation.</p>
+     *
+     * @param path the file's path
+     * @return true if the file exists
+     */
+    public static boolean exists(String path) {
+        return currentGeneration(path) >= 0;
+    }
+
+    /**
+     * <p>Deletes all the generations of an index file and the files of its segments.</p>
+     *
+     * @param path the file's path
+     * @return true if there was a generation and all the files have been deleted
+     */
+    public static boolean delete(String path) {
+        boolean deleted = exists(path) && deleteGenerations(path, Long.MAX_VALUE);
+        return SegmentFile.deleteSegments(path, new HashSet<Long>()) && deleted;
+    }
+
+    /**
+     * <p>
+     * Deletes the generations of an index file before a generation. A generation<br />
+     * that cannot be deleted, e.g. because it is still mapped, is deleted by a<br />
+     * later write.
+     * </p>
+     *
+     * @param path the file's path
+     * @param generation the first generation that is kept
+     * @return true if all the generations before it have been deleted
+     */
+    private static boolean deleteGenerations(String path, long generation) {
+        boolean deleted = true;
+        for (long old : listGenerations(path))
+            if (old < generation) deleted = new File(generationPath(path, old)).delete() && deleted;
+        return deleted;
+    }
+
+    /**
+     * @param path the file's path
+     * @return the newest generation of the file, -1 if there is none
+     */
+    private static long currentGeneration(String path) {
+        long current = -1;
+        for (long generation : listGenerations(path))
+            current = Math.max(current, generation);
+        return current;
+    }
+
+    /**
+     * <p>
+     * Finds the generations of an index file. The generation 0 is the path itself<br />
+     * and the generation <code>n</code> has the number before the ending of the<br />
+     * path (e.g. <code>name.3.idx</code>), so that it keeps the ending.
+     * </p>
+     *
+     * @param path the file's path
+     * @return the generations that exist
+     */
+    private static long[] listGenerations(String path) {
+        long[] numbers = listNumbered(path, path.substring(withoutEnding(path).length()));
+        long[] generations = new long[numbers.length + 1];
+        int count = 0;
+        if (new File(path).exists()) generations[count++] = 0;
+        for (long number : numbers)
+            if (number > 0) generations[count++] = number;
+        return Arrays.copyOf(generations, count);
+    }
+
+    /**
+     * <p>
+     * Finds the files next to a file whose names are the file's name without<br />
+     * its ending, a number and another ending (e.g. <code>name.3.seg</code>).
+     * </p>
+     *
+     * @param path the file's path
+     * @param ending the ending of the numbered files
+     * @return the numbers of the files that exist
+     */
+    static long[] listNumbered(String path, String ending) {
+        File file = new File(path).getAbsoluteFile();
+        String prefix = new File(withoutEnding(path)).getName() + ".";
+
+        String[] names = file.getParentFile().list();
+        if (names == null) return new long[0];
+        long[] numbers = new long[names.length];
+        int count = 0;
+        for (String other : names) {
+            if (other.length() <= prefix.length() + ending.length()
+                    || !other.startsWith(prefix) || !other.endsWith(ending)) continue;
+            String number = other.substring(prefix.length(), other.length() - ending.length());
+            if (number.length() > 18 || (number.length() > 1 && number.charAt(0) == '0')) continue;
+            boolean digits = true;
+            for (int i = 0; i < number.length(); i++)
+                digits &= Character.isDigit(number.charAt(i));
+            if (digits) numbers[count++] = Long.parseLong(number);
+        }
+        return Arrays.copyOf(numbers, count);
+    }
+
+    /**
+     * @param path the file's path
+     * @param generation the generation
+     * @return the path of the file's generation
+     */
+    private static String generationPath(String path, long generation) {
+        if (generation == 0) return path;
+
+        String base = withoutEnding(path);
+        return base + "." + generation + path.substring(base.length());
+    }
+
+    /**
+     * @param path the file's path
+     * @return the path without the ending of the file's name
+     */
+    static String withoutEnding(String path) {
+        String name = new File(path).getName();
+        int dot = name.lastIndexOf('.');
+        return (dot < 0) ? path : path.substring(0, path.length() - (name.length() - dot));
+    }
+
+    /**
+     * <p>
+     * Reads a whole index from a file to the memory. If the file is the manifest<br />
+     * of a segmented index (see <code>SegmentFile</code>), its segments are read.
+     * </p>
+     *
+     * @param path the file's path
+     * @return the index
+     * @throws IOException if the file cannot be read or it is not an index file
+     */
+    public static Index read(String path) throws IOException {
+        if (SegmentFile.isManifest(path)) {
+            SegmentedIndex segmented = SegmentFile.read(path);
+            segmented.close();
+            return segmented.toIndex();
+        }
+
+        RandomAccessFile file = new RandomAccessFile(currentPath(path), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            Header header = readHeader(channel);
+            ChannelReader in = new ChannelReader(channel, header.docTableOffset);
+
+            // DOCUMENT TABLE
+            Index index = new Index(in.getString());
+            DocumentDictionary docs = index.getDocumentDictionary();
+            DocumentStatistics stats = index.getDocumentStatistics();
+            for (int i = 0; i < header.docCount; i++) {
+                int docId = docs.add(in.getString());
+                stats.set(docId, in.getInt(), in.getInt(), in.getInt());
+            }
+
+            // DICTIONARY
+            int[] docFreqs = new int[header.termCount];
+            String[] words = readDictionary(in, header, docFreqs);
+
+            // POSTINGS
+            in.seek(header.postingsOffset);
+            for (int i = 0; i < words.length; i++) {
+                skipPointers(in, header);
+                DocumentList list = new DocumentList();
+                int docId = 0;
+                for (int j = 0; j < docFreqs[i]; j++) {
+                    docId += in.getInt();
+                    list.add(docId, in.getInt());
+                }
+                index.put(words[i], list);
+            }
+            index.invalidateWeights();
+
+            return index;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Reads an index from a file to a <code>CompactIndex</code>. The posting lists<br />
+     * stay compressed in the memory, like they are in the file.
+     * </p>
+     *
+     * @param path the file's path
+     * @return the compact index
+     * @throws IOException if the file cannot be read or it is not an index file
+     */
+    public static CompactIndex readCompact(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(currentPath(path), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            Header header = readHeader(channel);
+            ChannelReader in = new ChannelReader(channel, header.docTableOffset);
+
+            // DOCUMENT TABLE
+            CompactIndex index = new CompactIndex(in.getString());
+            for (int i = 0; i < header.docCount; i++)
+                index.addDocument(in.getString(), in.getInt(), in.getInt(), in.getInt());
+
+            // DICTIONARY
+            int[] docFreqs = new int[header.termCount];
+            String[] words = readDictionary(in, header, docFreqs);
+
+            // POSTINGS
+            in.seek(header.postingsOffset);
+            for (int i = 0; i < words.length; i++) {
+                skipPointers(in, header);
+                CompressedPostings list = new CompressedPostings();
+                int docId = 0;
+                for (int j = 0; j < docFreqs[i]; j++) {
+                    docId += in.getInt();
+                    list.add(docId, in.getInt());
+                }
+                index.addPostings(words[i], list);
+            }
+            index.finish();
+
+            return index;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * <p>Reads the words of the dictionary and their numbers of documents.</p>
+     *
+     * @param in the file's reader
+     * @param header the file's header
+     * @param docFreqs the array for the words' numbers of documents
+     * @return the words in the dictionary's order
+     * @throws IOException if the file cannot be read
+     */
+    private static String[] readDictionary(ChannelReader in, Header header, int[] docFreqs) throws IOException {
+        in.seek(header.dictionaryOffset);
+        String[] words = new String[header.termCount];
+        byte[] term = new byte[64];
+        for (int i = 0; i < words.length; i++) {
+            int shared = in.getInt();
+            int suffix = in.getInt();
+            if (term.length < shared + suffix)
+                term = Arrays.copyOf(term, (shared + suffix) * 2);
+            in.getBytes(term, shared, suffix);
+            words[i] = new String(term, 0, shared + suffix, UTF8);
+            docFreqs[i] = in.getInt();
+            in.getLong();
+            in.getInt();
+        }
+        return words;
+    }
+
+    /**
+     * <p>Reads and checks the header of an index file.</p>
+     *
+     * @param channel the file's channel
+     * @return the header
+     * @throws IOException if the file is not an index file
+     */
+    static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, buffer.position()) < 0)
+                throw new EOFException("Not an index file");
+        buffer.flip();
+
+        if (buffer.getInt() != MAGIC)
+            throw new IOException("Not an index file");
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported index file version");
+
+        Header header = new Header();
+        header.version = version;
+        header.docCount = buffer.getInt();
+        header.termCount = buffer.getInt();
+        header.blockCount = buffer.getInt();
+        buffer.getInt();
+        header.docTableOffset = buffer.getLong();
+        header.postingsOffset = buffer.getLong();
+        header.dictionaryOffset = buffer.getLong();
+        header.blockIndexOffset = buffer.getLong();
+        return header;
+    }
+
+    /**
+     * <p>
+     * Reads over the max weight's posting and the skip pointers at the start of<br />
+     * a posting list. The lists of the files of version 1 have no skip pointers<br />
+     * and the lists of the files before version 3 have no max weight's posting.
+     * </p>
+     *
+     * @param in the file's reader, at the start of the list
+     * @param header the file's header
+     * @throws IOException if the file cannot be read
+     */
+    private static void skipPointers(ChannelReader in, Header header) throws IOException {
+        if (header.version >= 3) {
+            in.getInt();
+            in.getInt();
+        }
+        if (header.version < 2 || in.getInt() == 0) return;
+
+        int length = in.getInt();
+        in.getBytes(new byte[length], 0, length);
+    }
+
+    /**
+     * <p>The header of an index file.</p>
+     */
+    static class Header {
+        int version;            // the version of the format
+        int docCount;           // the number of documents
+        int termCount;          // the number of words
+        int blockCount;         // the number of dictionary blocks
+        long docTableOffset;    // the document table's offset
+        long postingsOffset;    // the postings' offset
+        long dictionaryOffset;  // the dictionary's offset
+        long blockIndexOffset;  // the offset of the blocks' offsets table
+    }
+
+    /**
+     * <p>Writes to a channel through a buffer.</p>
+     */
+    static class ChannelWriter {
+        private FileChannel channel;    // the file's channel
+        private ByteBuffer buffer;      // the buffer
+        private long flushed;           // the position of the buffer's start in the file
+
+        ChannelWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.flushed = position;
+        }
+
+        long position() {
+            return flushed + buffer.position();
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(5);
+            VariableByte.writeInt(buffer, value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(10);
+            VariableByte.writeLong(buffer, value);
+        }
+
+        void putFixedLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int n = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void putString(String str) throws IOException {
+            byte[] bytes = str.getBytes(UTF8);
+            putInt(bytes.length);
+            putBytes(bytes, 0, bytes.length);
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                flushed += channel.write(buffer, flushed);
+            buffer.clear();
+        }
+
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() < n) flush();
+        }
+    }
+
+    /**
+     * <p>Reads from a channel through a buffer.</p>
+     */
+    static class ChannelReader {
+        private FileChannel channel;    // the file's channel
+        private ByteBuffer buffer;      // the buffer
+        private long position;          // the position of the buffer's end in the file
+
+        ChannelReader(FileChannel channel, long position) throws IOException {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            seek(position);
+        }
+
+        void seek(long position) {
+            this.position = position;
+            buffer.clear();
+            buffer.limit(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(5);
+            return VariableByte.readInt(buffer);
+        }
+
+        long getLong() throws IOException {
+            ensure(10);
+            return VariableByte.readLong(buffer);
+        }
+
+        void getBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(1);
+                int n = Math.min(length, buffer.remaining());
+                buffer.get(bytes, offset, n);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        String getString() throws IOException {
+            byte[] bytes = new byte[getInt()];
+            getBytes(bytes, 0, bytes.length);
+            return new String(bytes, UTF8);
+        }
+
+        /**
+         * <p>
+         * Reads more bytes if there are less than <code>n</code> in the buffer. It fails<br />
+         * only if there are no bytes at all, so a number at the end of the file can<br />
+         * be read with fewer bytes than its max size.
+         * </p>
+         */
+        private void ensure(int n) throws IOException {
+            if (buffer.remaining() >= n) return;
+
+            buffer.compact();
+            while (buffer.position() < n) {
+                int read = channel.read(buffer, position);
+                if (read < 0) break;
+                position += read;
+            }
+            buffer.flip();
+            if (!buffer.hasRemaining())
+                throw new EOFException("Unexpected end of index file");
+        }
+    }
+}
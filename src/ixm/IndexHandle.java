@@ -1,14 +1,51 @@
 package ixm;
 
 import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * <p>
- * This class handles an index. It can insert, delete and show an index.
+ * This class handles an index. It can insert, delete and show an index.<br />
+ * <br />
+ * A read-only index (see <code>MappedIndex</code> and <code>CompactIndex</code>) is queried<br />
+ * as it is. It is read to an <code>Index</code> before its first change.<br />
+ * <br />
+ * A <code>SegmentedIndex</code> takes the changes itself, so the documents are only<br />
+ * added to its buffer or marked as deleted.<br />
+ * <br />
+ * If the handle has an <code>OperationLog</code>, every insert and delete is logged<br />
+ * and it is on the disk when the method returns. The inserts of a bulk insert<br />
+ * are on the disk when the bulk insert is committed.<br />
+ * <br />
+ * With logical deletes, <code>DeleteDocument</code> only marks the document as deleted<br />
+ * (see <code>Index.deleteDoc</code>) and the index is compacted in batches.<br />
+ * <br />
+ * A save or a checkpoint takes a snapshot of the index (see <code>Index.snapshot</code>)<br />
+ * and writes it on a background thread, so the index can be queried and changed<br />
+ * while the file is written.<br />
+ * <br />
+ * Many threads can query the index while one thread changes it. A query runs<br />
+ * between <code>BeginRead</code> and <code>EndRead</code>, and a change waits until the running<br />
+ * queries have ended. The documents of a parallel insert are indexed without<br />
+ * the lock and only their merge waits for the queries.
  * </p>
  *
  * @see IndexManager
  * @see Index
+ * @see ReadOnlyIndex
+ * @see SegmentedIndex
+ * @see OperationLog
  *
  * @author Evripidis Gkanias
  * @author Stergios Giannouloudis
@@ -17,9 +54,17 @@ import java.io.*;
  */
 public class IndexHandle implements Serializable {
     private boolean open = false;   // shows if the index handler is opened
-    private boolean changed;        // shows if there are changes on the index
+    private volatile boolean changed;   // shows if there are changes on the index
     private Index index;            // the index structure
-    private String lastWord;        // the last word of the previous line
+    private transient Tokenizer tokenizer;  // splits the documents into words
+    private boolean bulk;           // shows if the weights are computed at the end of a bulk insert
+    private boolean logicalDeletes; // shows if the deletes only mark the documents as deleted
+    private transient ReadOnlyIndex readOnly;   // the read-only index or null if the index is an Index
+    private transient SegmentedIndex segmented; // the segmented index or null if the index is an Index
+    private transient OperationLog log;         // the write-ahead log or null if the changes are not logged
+    private transient ExecutorService saver;    // the thread that writes the snapshots, null before the first save
+    private transient Future<Boolean> saving;   // the last save or null
+    private final transient ReentrantReadWriteLock lock = new ReentrantReadWriteLock();   // many queries or one change at a time
 
     /**
      * <p>Opens the index handle and shows that it's not changed.</p>
@@ -30,17 +75,148 @@ public class IndexHandle implements Serializable {
         this.index = index;
         open = true;
         changed = false;
-        lastWord = "";
+        bulk = false;
     }
 
     /**
+     * <p>Opens the index handle over a read-only index.</p>
+     *
+     * @param readOnly the read-only index
+     */
+    public IndexHandle(ReadOnlyIndex readOnly) {
+        this.readOnly = readOnly;
+        open = true;
+        changed = false;
+        bulk = false;
+    }
+
+    /**
+     * <p>Opens the index handle over a segmented index.</p>
+     *
+     * @param segmented the segmented index
+     */
+    public IndexHandle(SegmentedIndex segmented) {
+        this.segmented = segmented;
+        open = true;
+        changed = false;
+        bulk = false;
+    }
+
+    /**
+     * <p>
+     * If the index is read-only or segmented, it is read to an <code>Index</code> first<br />
+     * and the handle keeps this <code>Index</code>.
+     * </p>
      *
      * @return the index structure
      */
     public Index getIndex() {
+        lock.writeLock().lock();
+        try {
+            this.load();
+            if (segmented != null) {
+                segmented.waitForMerges();
+                index = segmented.toIndex();
+                index.updateWeights();
+                segmented.close();
+                segmented = null;
+            }
+            return index;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Returns the index for the queries. It is the read-only or the segmented<br />
+     * index, if there is one, or else the index structure, whose weights are<br />
+     * brought up to date by <code>BeginRead</code>. The reader can only be used while a<br />
+     * query runs, so the calling thread must hold the lock of <code>BeginRead</code>.
+     * </p>
+     *
+     * @return the index for the queries
+     * @throws IllegalStateException if the calling thread has not started a query
+     */
+    public IndexReader getReader() {
+        if (lock.getReadHoldCount() == 0 && !lock.isWriteLockedByCurrentThread())
+            throw new IllegalStateException("The index is read outside of BeginRead and EndRead");
+
+        if (readOnly != null) return readOnly;
+        if (segmented != null) return segmented;
         return index;
     }
 
+    /**
+     * <p>
+     * Starts a query. The index does not change until <code>EndRead</code> is called,<br />
+     * so the returned reader and <code>getReader</code> can be used by many threads.<br />
+     * If the weights are out of date, they are computed first, which is the only<br />
+     * place where a query computes them. A thread that has started a query must<br />
+     * not change the index before it ends the query.
+     * </p>
+     *
+     * @return the index for the queries
+     */
+    public IndexReader BeginRead() {
+        lock.readLock().lock();
+        if (readOnly != null || segmented != null || !index.isDirty() || lock.getReadHoldCount() > 1)
+            return this.getReader();
+
+        // the weights are computed with the write lock, which is then changed to a read lock
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (index.isDirty()) index.updateWeights();
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return this.getReader();
+    }
+
+    /**
+     * <p>Ends a query that <code>BeginRead</code> has started.</p>
+     */
+    public void EndRead() {
+        lock.readLock().unlock();
+    }
+
+    /**
+     *
+     * @return shows if the index is queried from a read-only index
+     */
+    public boolean isReadOnly() {
+        return readOnly != null;
+    }
+
+    /**
+     *
+     * @return the segmented index or null if the index is not segmented
+     */
+    public SegmentedIndex getSegmentedIndex() {
+        return segmented;
+    }
+
+    /**
+     * <p>
+     * Reads the read-only index to an <code>Index</code> and closes it, so that the<br />
+     * index can be changed.
+     * </p>
+     */
+    private void load() {
+        if (readOnly == null) return;
+
+        try {
+            index = readOnly.toIndex();
+            index.updateWeights();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot read the index " + readOnly.getName(), ex);
+        }
+        readOnly.close();
+        readOnly = null;
+    }
+
     /**
      * <p>
      * If the parametre is null it is false. In another case it replaces the index<br />
@@ -51,11 +227,41 @@ public class IndexHandle implements Serializable {
      * @return shows if the replacement is done
      */
     public boolean setIndex(Index index) {
-        if (index == null) return false;
+        lock.writeLock().lock();
+        try {
+            if (index == null) return false;
         
-        this.index = index;
-        changed = true;
-        return true;
+            if (readOnly != null) {
+                readOnly.close();
+                readOnly = null;
+            }
+            if (segmented != null) {
+                segmented.close();
+                segmented = null;
+            }
+            this.index = index;
+            changed = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @return the write-ahead log or null if the changes are not logged
+     */
+    public OperationLog getOperationLog() {
+        return log;
+    }
+
+    /**
+     * <p>Logs the next changes. The log must have been replayed on the index.</p>
+     *
+     * @param log the write-ahead log
+     */
+    public void setOperationLog(OperationLog log) {
+        this.log = log;
     }
 
     /**
@@ -68,9 +274,23 @@ public class IndexHandle implements Serializable {
 
     /**
      * <p>Closes the <code>Index Handle</code></p>
+     *
+     * @return shows if the records of the operation log have reached the disk
      */
-    public void setClosed() {
-        open = false;
+    public boolean setClosed() {
+        this.WaitForSave();
+        if (saver != null) saver.shutdown();
+
+        // the running queries end before the index is closed
+        lock.writeLock().lock();
+        try {
+            open = false;
+            if (readOnly != null) readOnly.close();
+            if (segmented != null) segmented.close();
+            return log == null || log.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -86,13 +306,87 @@ public class IndexHandle implements Serializable {
      * @return the index's name
      */
     public String getIndexName() {
-        return this.index.getName();
+        if (readOnly != null) return readOnly.getName();
+        if (segmented != null) return segmented.getName();
+        return index.getName();
+    }
+
+    /**
+     * <p>
+     * Starts a bulk insert. Until <code>CommitBulkInsert</code> is called, the inserts<br />
+     * and deletes only mark the changed words as dirty and the weights are not<br />
+     * computed after every document.
+     * </p>
+     */
+    public void BeginBulkInsert() {
+        lock.writeLock().lock();
+        try {
+            this.load();
+            bulk = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Ends a bulk insert and computes once the weights that are out of date. A<br />
+     * segmented index flushes its buffer.
+     * </p>
+     */
+    public void CommitBulkInsert() {
+        lock.writeLock().lock();
+        try {
+            this.load();
+            bulk = false;
+            if (segmented != null)
+                segmented.flush();
+            else
+                index.updateWeights();
+
+            try {
+                this.commitLog();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot write the operation log " + log.getPath(), ex);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
      * <p>
-     * Adds a document to the index from a file path. Cleans the document from<br />
-     * useless characters and puts its words to the index structure.<br /><br />
+     * Sets the delete mode. With logical deletes, a deleted document stays in the<br />
+     * posting lists until the index is compacted and the weights are not computed<br />
+     * after every delete. A segmented index always deletes logically.
+     * </p>
+     *
+     * @param logicalDeletes shows if the deletes only mark the documents as deleted
+     */
+    public void setLogicalDeletes(boolean logicalDeletes) {
+        this.logicalDeletes = logicalDeletes;
+    }
+
+    /**
+     *
+     * @return shows if the deletes only mark the documents as deleted
+     */
+    public boolean isLogicalDeletes() {
+        return logicalDeletes;
+    }
+
+    /**
+     *
+     * @return shows if a bulk insert is running
+     */
+    public boolean isBulkInsert() {
+        return bulk;
+    }
+
+    /**
+     * <p>
+     * Adds a document to the index from a file path. The <code>Tokenizer</code> cleans<br />
+     * the document from useless characters and puts its words to the index structure.<br /><br />
      * In case the file path is invalid, it returns false.
      * </p>
      *
@@ -100,32 +394,69 @@ public class IndexHandle implements Serializable {
      * @return informs the developer about the success of the insert
      */
     public boolean InsertDocument(String filePath) {
-
         String fileName = filePath.split("\\\\")[filePath.split("\\\\").length - 1];
-        this.DeleteDocument(filePath);
 
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(new File(filePath)));
+            Reader reader = new FileReader(new File(filePath));
 
-            while (reader.ready()) {
-                String[] words = this.cleanString(reader.readLine()).split(" ");
-                index.putAll(words, fileName);
+            try {
+                return this.InsertDocument(fileName, reader);
+            } finally {
+                reader.close();
             }
-            index.updateWeights();
-            changed = true;
-            
-            return true;
 
-        } catch (Exception ex) {
+        } catch (IOException ex) {
             return false;
         }
         
     }
 
+    /**
+     * <p>
+     * Adds a document to the index from a reader. The <code>Tokenizer</code> cleans<br />
+     * the document from useless characters and puts its words to the index structure.<br />
+     * A document with the same name is replaced.
+     * </p>
+     *
+     * @param docName the document's name
+     * @param reader the document's reader, which is not closed
+     * @return informs the developer about the success of the insert
+     */
+    public boolean InsertDocument(String docName, Reader reader) {
+        lock.writeLock().lock();
+        try {
+            this.load();
+
+            try {
+                if (this.removeDoc(docName) > 0) changed = true;
+
+                // a logged document or a document of a segmented index is put to a small index first
+                Index target = (segmented == null && log == null) ? index : new Index(this.getIndexName());
+
+                if (tokenizer == null) tokenizer = new Tokenizer();
+                tokenizer.tokenize(reader, target, docName);
+                if (target != index) {
+                    if (log != null) log.logInsert(target);
+                    this.applyInsert(target);
+                }
+                if (segmented == null && !bulk) index.updateWeights();
+                changed = true;
+                this.commitLog();
+            
+                return true;
+
+            } catch (Exception ex) {
+                return false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     /**
      * <p>
      * Inserts all the documents of a folder, using the <code>InsertDocumet</code><br />
-     * method.
+     * method in a bulk insert, so the weights are computed once at the end.
      * </p>
      *
      * @param dirPath the directory's path
@@ -136,62 +467,455 @@ public class IndexHandle implements Serializable {
         if (!dir.isDirectory() || !dir.exists()) return false;
 
         File[] arrayFiles = dir.listFiles();
-        for (File file : arrayFiles) {
-            lastWord = "";
-            if (file.getName().matches("[A-Za-z0-9]+\\.txt$"))
-                this.InsertDocument(file.getPath());
+        boolean wasBulk;
+        lock.writeLock().lock();
+        try {
+            this.load();
+            wasBulk = bulk;
+            bulk = true;
+        } finally {
+            lock.writeLock().unlock();
         }
+        // every document takes the lock, so the queries can run between the documents
+        for (File file : arrayFiles)
+            this.InsertFile(file);
+        if (!wasBulk) this.CommitBulkInsert();
 
         changed = true;
         return true;
     }
 
+    /**
+     * <p>
+     * Inserts all the documents of a folder in parallel. The files are split<br />
+     * among the threads of a <code>ForkJoinPool</code>, every thread builds a partial<br />
+     * index and the partial indexes are merged in the order of the files. The<br />
+     * result is the same as the one of <code>InsertAllDocument(String)</code>.
+     * </p>
+     *
+     * @see ParallelIndexBuilder
+     *
+     * @param dirPath the directory's path
+     * @param parallelism the number of threads
+     * @return informs the developer about the success of the insert
+     */
+    public boolean InsertAllDocument(String dirPath, int parallelism) {
+        if (parallelism <= 1) return this.InsertAllDocument(dirPath);
+
+        File dir = new File(dirPath);
+        if (!dir.isDirectory() || !dir.exists()) return false;
+
+        ArrayList<File> docFiles = new ArrayList<File>();
+        for (File file : dir.listFiles())
+            if (file.getName().matches("[A-Za-z0-9]+\\.txt$"))
+                docFiles.add(file);
+        File[] arrayFiles = docFiles.toArray(new File[docFiles.size()]);
+
+        // a few tasks for every thread, so that the threads finish together
+        int threshold = arrayFiles.length / (parallelism * 4) + 1;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        ArrayList<Index> partials;
+        try {
+            // the partial indexes are built without the lock, so the queries wait only for their merge
+            partials = pool.invoke(
+                    new ParallelIndexBuilder(this.getIndexName(), arrayFiles, 0, arrayFiles.length, threshold));
+        } finally {
+            pool.shutdown();
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.load();
+            for (Index partial : partials)
+                this.insertPartial(partial);
+            this.endInsert();
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Inserts all the documents of a collection's file, straight from the file.<br />
+     * The records are read in chunks of <code>CollectionReader.CHUNK_SIZE</code> and<br />
+     * every chunk is parsed and indexed by a <code>CollectionIndexBuilder</code> on a<br />
+     * thread of a <code>ForkJoinPool</code>. The partial indexes are merged in the order<br />
+     * of the records, so the result is the same as the one of <code>Parser.ParsFile</code><br />
+     * followed by the insert of the documents in the order of the records. Only a<br />
+     * few chunks are in memory at a time.
+     * </p>
+     *
+     * @see CollectionIndexBuilder
+     *
+     * @param filePath the collection's file path
+     * @param parallelism the number of threads
+     * @param writeDocs shows if the documents' files are also written in the "DOCS" directory
+     * @return informs the developer about the success of the insert
+     */
+    public boolean InsertCollection(String filePath, int parallelism, boolean writeDocs) {
+        return this.InsertCollection(filePath, parallelism, writeDocs, null);
+    }
+
+    /**
+     * <p>
+     * Inserts all the documents of a collection's file, straight from the file,<br />
+     * like <code>InsertCollection(String, int, boolean)</code>. If a store writer is<br />
+     * given, the documents are also added to it in the order of the records. The<br />
+     * writer is not closed.
+     * </p>
+     *
+     * @see DocumentStore
+     *
+     * @param filePath the collection's file path
+     * @param parallelism the number of threads
+     * @param writeDocs shows if the documents' files are also written in the "DOCS" directory
+     * @param store the writer of the collection's document store or null
+     * @return informs the developer about the success of the insert
+     */
+    public boolean InsertCollection(String filePath, int parallelism, boolean writeDocs, DocumentStoreWriter store) {
+        if (!new File(filePath).isFile()) return false;
+
+        String docsPath = null;
+        if (writeDocs) {
+            docsPath = Parser.DocsDirectory(filePath);
+            new File(docsPath).mkdir();
+        }
+
+        parallelism = Math.max(parallelism, 1);
+        ArrayDeque<CollectionIndexBuilder> builders = new ArrayDeque<CollectionIndexBuilder>();
+        ArrayDeque<ForkJoinTask<Index>> pending = new ArrayDeque<ForkJoinTask<Index>>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            CollectionReader reader = new CollectionReader(filePath);
+            try {
+                ArrayList<String> records;
+                while (!(records = reader.readRecords(CollectionReader.CHUNK_SIZE)).isEmpty()) {
+                    CollectionIndexBuilder builder =
+                            new CollectionIndexBuilder(this.getIndexName(), records, docsPath, store != null);
+                    builders.add(builder);
+                    pending.add(pool.submit(builder));
+                    // the reader waits for the oldest chunk, so it does not get far ahead of the threads
+                    if (pending.size() > parallelism * 2)
+                        this.insertChunk(builders.poll(), pending.poll().join(), store);
+                }
+                while (!pending.isEmpty())
+                    this.insertChunk(builders.poll(), pending.poll().join(), store);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        } catch (RuntimeException ex) {
+            return false;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.load();
+            this.endInsert();
+            return true;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Inserts the partial index of a chunk and adds its documents to the store.</p>
+     *
+     * @param builder the chunk's builder
+     * @param partial the chunk's partial index
+     * @param store the writer of the document store or null
+     * @throws IOException if the insert cannot be logged or the documents cannot be stored
+     */
+    private void insertChunk(CollectionIndexBuilder builder, Index partial, DocumentStoreWriter store)
+            throws IOException {
+        this.insertPartial(partial);
+        if (store == null) return;
+
+        ArrayList<String> docNames = builder.getDocNames();
+        ArrayList<String> texts = builder.getTexts();
+        for (int i = 0; i < docNames.size(); i++)
+            store.add(docNames.get(i), texts.get(i));
+    }
+
+    /**
+     * <p>
+     * Logs and adds the documents of a partial index to the index. The queries<br />
+     * can run between the partial indexes.
+     * </p>
+     *
+     * @param partial the partial index
+     * @throws IOException if the insert cannot be logged
+     */
+    private void insertPartial(Index partial) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (log != null) log.logInsert(partial);
+            this.applyInsert(partial);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Ends an insert of many documents. A segmented index flushes its buffer and<br />
+     * the weights are computed and the log is committed, unless a bulk insert is<br />
+     * running. The write lock must be held.
+     * </p>
+     *
+     * @throws IOException if the log cannot be written
+     */
+    private void endInsert() throws IOException {
+        if (segmented != null)
+            segmented.flush();
+        else if (!bulk)
+            index.updateWeights();
+
+        changed = true;
+        if (!bulk) this.commitLog();
+    }
+
+    /**
+     * <p>Inserts a file of a folder, if it is a document.</p>
+     *
+     * @param file the file
+     */
+    void InsertFile(File file) {
+        if (file.getName().matches("[A-Za-z0-9]+\\.txt$"))
+            this.InsertDocument(file.getPath());
+    }
+
     /**
      * <p>
      * Removes a document from the index. It removes the <code>DocumentInfo</code><br />
-     * of the specific document from all the words of the index structure.
+     * of the specific document from all the words of the index structure, or<br />
+     * marks it as deleted if the deletes are logical.
      * </p>
      *
      * @param filePath the document's path
      * @return informs the developer about the success of the delete
      */
     public boolean DeleteDocument(String filePath) {
-        
-        String fileName = filePath.split("\\\\")[filePath.split("\\\\").length - 1];
+        lock.writeLock().lock();
+        try {
+            this.load();
 
-        if (index.removeDoc(fileName) > 0) {
-            index.updateWeights();
+            String fileName = filePath.split("\\\\")[filePath.split("\\\\").length - 1];
+
+            try {
+                if (logicalDeletes && segmented == null) {
+                    if (!index.deleteDoc(fileName)) return false;
+                    if (log != null) log.logDelete(fileName);
+
+                    changed = true;
+                    this.commitLog();
+                    return true;
+                }
+                if (this.removeDoc(fileName) > 0) {
+                    if (!bulk && segmented == null) index.updateWeights();
+
+                    changed = true;
+                    this.commitLog();
+                    return true;
+                }
+                else return false;
+            } catch (IOException ex) {
+                return false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>Removes a document from the index and logs the delete.</p>
+     *
+     * @param fileName the document's name
+     * @return the result of the index's <code>removeDoc</code>
+     * @throws IOException if the delete cannot be logged
+     */
+    private long removeDoc(String fileName) throws IOException {
+        long removed = (segmented != null) ? segmented.removeDoc(fileName) : index.removeDoc(fileName);
+        if (removed > 0 && log != null) log.logDelete(fileName);
+
+        return removed;
+    }
 
+    /**
+     * <p>
+     * Adds the documents of a small index to the index. A document that is<br />
+     * already in the index is replaced. The documents are not logged.
+     * </p>
+     *
+     * @param documents the index with the documents
+     */
+    void applyInsert(Index documents) {
+        lock.writeLock().lock();
+        try {
+            this.load();
+            if (segmented != null)
+                segmented.add(documents);
+            else
+                index.merge(documents);
             changed = true;
-            return true;
+        } finally {
+            lock.writeLock().unlock();
         }
-        else return false;
+    }
 
+    /**
+     * <p>Removes a document from the index. The delete is not logged.</p>
+     *
+     * @param docName the document's name
+     */
+    void applyDelete(String docName) {
+        lock.writeLock().lock();
+        try {
+            this.load();
+            if (segmented != null)
+                segmented.removeDoc(docName);
+            else
+                index.removeDoc(docName);
+            changed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Waits until the logged changes are on the disk, unless a bulk insert is<br />
+     * running, and writes a checkpoint if the log is large.
+     * </p>
+     *
+     * @throws IOException if the log cannot be written
+     */
+    private void commitLog() throws IOException {
+        if (log == null) return;
+
+        if (!bulk) log.sync();
+        // a checkpoint is written in the background and the next one waits until it has finished
+        if (log.needsCheckpoint() && (saving == null || saving.isDone()))
+            this.save(log.getIndexPath(), false);
     }
 
     /**
      * <p>
-     * Keeps only the characters and the number of a string and removes the<br />
-     * additional white spaces.
+     * Saves the index to a file on a background thread. A snapshot of the index<br />
+     * is taken before the method returns, so the index can be queried and changed<br />
+     * while the snapshot is written. The very frequent words are removed from the<br />
+     * snapshot, not from the index (see <code>Index.removeFrequentWords</code>). A<br />
+     * segmented index is saved as its segments (see <code>SegmentFile</code>), with all<br />
+     * of its words, because the segments that are already on disk are not written<br />
+     * again. If the handle has an <code>OperationLog</code>, the records that are in<br />
+     * the snapshot are dropped from the log when the file has been written. If the<br />
+     * index has not changed, nothing is written.
      * </p>
      *
-     * @param str the string that is going to be cleaned
-     * @return the new (cleaned) string
+     * @param path the path of the index file
+     * @return the save, whose result shows if the file has been written
      */
-    private String cleanString(String str) {
-        str = str.trim();
-        if (!lastWord.equals("")) {
-            str = lastWord + str;
+    public Future<Boolean> SaveInBackground(String path) {
+        if (!changed) {
+            FutureTask<Boolean> done = new FutureTask<Boolean>(new Callable<Boolean>() {
+                public Boolean call() {
+                    return true;
+                }
+            });
+            done.run();
+            return done;
         }
-        lastWord = str.split(" ")[str.split(" ").length-1];
-        if (!lastWord.matches("[A-Za-z-]+-$")) lastWord = "";
-        else lastWord = lastWord.replaceAll("-$","");
 
-        str = str.replaceAll("[^A-Za-z0-9,.]", " ");
-        str = str.replaceAll("[,.]", "");
-        str = str.replaceAll(" {2,}", " ");
-        str = str.trim();
-        return str;
+        return this.save(path, true);
+    }
+
+    /**
+     * <p>Waits until the last save has finished.</p>
+     *
+     * @return a value that shows if the last save has written the file, true if there is no save
+     */
+    public boolean WaitForSave() {
+        if (saving == null) return true;
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return saving.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException ex) {
+            return false;
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * <p>
+     * Takes a snapshot of the index and writes it on the saver thread. The saves<br />
+     * are written one after the other, in the order that they have been taken.
+     * </p>
+     *
+     * @param path the path of the index file
+     * @param removeFrequentWords shows if the very frequent words are removed from the snapshot of an unsegmented index
+     * @return the save, whose result shows if the file has been written
+     */
+    private Future<Boolean> save(final String path, final boolean removeFrequentWords) {
+        // the snapshot is taken between the changes
+        lock.writeLock().lock();
+        try {
+            this.load();
+
+            final Index indexSnapshot = (segmented == null) ? index.snapshot() : null;
+            final SegmentedIndex segmentedSnapshot = (segmented != null) ? segmented.snapshot() : null;
+            // the records up to here are in the snapshot
+            final OperationLog snapshotLog = log;
+            final long logSize = (log != null) ? log.getSize() : 0;
+            changed = false;
+
+            if (saver == null)
+                saver = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable task) {
+                        Thread thread = new Thread(task, "Index saver");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            saving = saver.submit(new Callable<Boolean>() {
+                public Boolean call() {
+                    try {
+                        if (segmentedSnapshot != null) {
+                            // only the segments since the last save are written
+                            SegmentFile.write(segmentedSnapshot, path);
+                            segmentedSnapshot.close();
+                        } else {
+                            if (removeFrequentWords) indexSnapshot.removeFrequentWords();
+                            IndexFile.write(indexSnapshot, path);
+                        }
+                        if (snapshotLog != null) snapshotLog.truncate(logSize);
+
+                        return true;
+                    } catch (IOException ex) {
+                        changed = true;
+                        return false;
+                    }
+                }
+            });
+            return saving;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -201,7 +925,7 @@ public class IndexHandle implements Serializable {
      */
     @Override
     public String toString() {
-        return index.toString();
+        return this.getIndex().toString();
     }
 
 }
@@ -1,6 +1,7 @@
 package ixm;
 
 import java.io.*;
+import java.util.concurrent.Future;
 
 /**
  * <p>
@@ -17,6 +18,7 @@ public class IndexManager implements Serializable {
 
     final String PATH = "Collections\\INDEXES\\";   // the indexes' directory path
     final String ENDING = ".idx";                   // the indexes' ending
+    final String LOG_ENDING = ".log";               // the ending of the indexes' operation logs
 
     /**
      * <p>It creates the indexes' directory</p>
@@ -28,7 +30,8 @@ public class IndexManager implements Serializable {
 
     /**
      * <p>
-     * Creates a new index in the indexes' directory.
+     * Creates a new index in the indexes' directory. The collection's documents<br />
+     * are indexed in parallel by all the available processors.
      * </p>
      *
      * @param inxName the index name
@@ -36,16 +39,88 @@ public class IndexManager implements Serializable {
      */
     public boolean CreateIndex(String inxName) {
 
-        if (this.OpenIndex(inxName) != null) return false;
+        if (IndexFile.exists(PATH + inxName + ENDING)) return false;
+        new File(PATH + inxName + LOG_ENDING).delete();
 
         IndexHandle iHandle = new IndexHandle(new Index(inxName));
-        iHandle.InsertAllDocument("Collections\\" + inxName + "\\DOCS");
+        iHandle.InsertAllDocument("Collections\\" + inxName + "\\DOCS",
+                Runtime.getRuntime().availableProcessors());
         if (this.CloseIndex(iHandle))
             return true;
         else
             return false;
     }
 
+    /**
+     * <p>
+     * Creates a new index in the indexes' directory straight from the collection's<br />
+     * file. The records are parsed and indexed in parallel by all the available<br />
+     * processors, without reading the documents' files. The documents can be kept<br />
+     * in their own files, in the collection's <code>DocumentStore</code> or in both.
+     * </p>
+     *
+     * @see IndexHandle#InsertCollection(String, int, boolean, DocumentStoreWriter)
+     *
+     * @param inxName the index name
+     * @param filePath the collection's file path
+     * @param writeDocs shows if the documents' files are also written in the "DOCS" directory
+     * @param storeDocs shows if the documents are written in the collection's document store
+     * @return informs the developer if the creation has been completed successfully
+     */
+    public boolean CreateIndex(String inxName, String filePath, boolean writeDocs, boolean storeDocs) {
+
+        if (IndexFile.exists(PATH + inxName + ENDING)) return false;
+        new File(PATH + inxName + LOG_ENDING).delete();
+
+        IndexHandle iHandle = new IndexHandle(new Index(inxName));
+        DocumentStoreWriter store = null;
+        boolean inserted;
+        try {
+            if (storeDocs) store = new DocumentStoreWriter(this.storePath(inxName));
+            try {
+                inserted = iHandle.InsertCollection(filePath, Runtime.getRuntime().availableProcessors(),
+                        writeDocs, store);
+            } finally {
+                if (store != null) store.close();
+            }
+        } catch (IOException ex) {
+            inserted = false;
+        }
+        if (!inserted) {
+            if (store != null) new File(this.storePath(inxName)).delete();
+            return false;
+        }
+        return this.CloseIndex(iHandle);
+    }
+
+    /**
+     * <p>
+     * Opens the document store of an index's collection. If the collection has no<br />
+     * store, returns null and the documents are read from their files.
+     * </p>
+     *
+     * @param inxName the index's name
+     * @return the collection's <code>DocumentStore</code> or null
+     */
+    public DocumentStore OpenDocumentStore(String inxName) {
+
+        try {
+            if (!new File(this.storePath(inxName)).exists()) return null;
+            return new DocumentStore(this.storePath(inxName));
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     *
+     * @param inxName the index's name
+     * @return the path of the document store of the index's collection
+     */
+    private String storePath(String inxName) {
+        return "Collections\\" + inxName + "\\" + DocumentStore.FILE_NAME;
+    }
+
     /**
      * <p>Destroys the index file.</p>
      *
@@ -55,16 +130,23 @@ public class IndexManager implements Serializable {
     public boolean DropIndex(String inxName) {
 
         try {
-            File inxFile = new File(PATH + inxName + ENDING);
+            String inxPath = PATH + inxName + ENDING;
             File srcFile = new File("Collections\\" + inxName + "\\DOCS");
+            File storeFile = new File(this.storePath(inxName));
 
-            if (!inxFile.exists() || !srcFile.exists())
+            if (!IndexFile.exists(inxPath) || (!srcFile.exists() && !storeFile.exists()))
                 throw new IllegalArgumentException("No such file or directory");
 
-            for (File f : srcFile.listFiles())
-                f.delete();
+            boolean deleted = true;
+            if (srcFile.exists()) {
+                for (File f : srcFile.listFiles())
+                    f.delete();
+                deleted = srcFile.delete();
+            }
+            if (storeFile.exists()) deleted = storeFile.delete() && deleted;
+            new File(PATH + inxName + LOG_ENDING).delete();
 
-            return inxFile.delete() && srcFile.delete();
+            return IndexFile.delete(inxPath) && deleted;
         } catch (Exception ex) {
             return false;
         }
@@ -72,7 +154,11 @@ public class IndexManager implements Serializable {
     }
 
     /**
-     * <p>If it cannot find the index's file, returns null.</p>
+     * <p>
+     * Reads the index's file (see <code>IndexFile</code>) and computes the weights.<br />
+     * The changes of the index's <code>OperationLog</code> are replayed on it, in every<br />
+     * open mode. If it cannot find or read the index's file, returns null.
+     * </p>
      *
      * @param inxName the index's name
      * @return the <code>IndexHandle</code> of the opened index
@@ -80,23 +166,105 @@ public class IndexManager implements Serializable {
     public IndexHandle OpenIndex(String inxName) {
 
         try {
-            ObjectInputStream reader =
-                    new ObjectInputStream(new
-                    FileInputStream(PATH + inxName + ENDING));
+            Index index = IndexFile.read(PATH + inxName + ENDING);
+            index.updateWeights();
+
+            return this.openLog(new IndexHandle(index), inxName);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Maps the index's file to the memory (see <code>MappedIndex</code>), so that the<br />
+     * queries read only the parts of the file that they need. The index is read<br />
+     * to the memory before its first change. An index that has been saved as<br />
+     * segments has no single file to map, so it is read to an <code>Index</code>. If it<br />
+     * cannot find or map the index's file, returns null.
+     * </p>
+     *
+     * @param inxName the index's name
+     * @return the <code>IndexHandle</code> of the opened index
+     */
+    public IndexHandle OpenMappedIndex(String inxName) {
+        if (SegmentFile.isManifest(PATH + inxName + ENDING)) return this.OpenIndex(inxName);
 
-            Index index = (Index) reader.readObject();
+        try {
+            return this.openLog(new IndexHandle(new MappedIndex(PATH + inxName + ENDING)), inxName);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
 
-            reader.close();
+    /**
+     * <p>
+     * Reads the index's file to a <code>CompactIndex</code>, whose posting lists stay<br />
+     * compressed in the memory. The index is read to an <code>Index</code> before its<br />
+     * first change. An index that has been saved as segments is read to an<br />
+     * <code>Index</code>. If it cannot find or read the index's file, returns null.
+     * </p>
+     *
+     * @param inxName the index's name
+     * @return the <code>IndexHandle</code> of the opened index
+     */
+    public IndexHandle OpenCompactIndex(String inxName) {
+        if (SegmentFile.isManifest(PATH + inxName + ENDING)) return this.OpenIndex(inxName);
 
-            return new IndexHandle(index);
+        try {
+            return this.openLog(new IndexHandle(IndexFile.readCompact(PATH + inxName + ENDING)), inxName);
         } catch (IOException ex) {
             return null;
-        } catch (ClassNotFoundException ex) {
-            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * <p>
+     * Reads the index's file to a <code>SegmentedIndex</code>, so that the changes<br />
+     * only add new segments. If the index has been saved as segments, the files<br />
+     * of its segments are read (see <code>SegmentFile</code>). If it cannot find or<br />
+     * read the index's file, returns null.
+     * </p>
+     *
+     * @param inxName the index's name
+     * @return the <code>IndexHandle</code> of the opened index
+     */
+    public IndexHandle OpenSegmentedIndex(String inxName) {
+
+        try {
+            String path = PATH + inxName + ENDING;
+            SegmentedIndex index = SegmentFile.isManifest(path)
+                    ? SegmentFile.read(path) : new SegmentedIndex(IndexFile.read(path));
+            return this.openLog(new IndexHandle(index), inxName);
+        } catch (IOException ex) {
             return null;
         }
     }
 
+    /**
+     * <p>
+     * Replays the index's operation log on the opened index and gives the log to<br />
+     * the <code>IndexHandle</code>, so that the next changes are logged.
+     * </p>
+     *
+     * @param iHandle the <code>IndexHandle</code> of the opened index
+     * @param inxName the index's name
+     * @return the <code>IndexHandle</code>
+     * @throws IOException if the log cannot be read
+     */
+    private IndexHandle openLog(IndexHandle iHandle, String inxName) throws IOException {
+        OperationLog log = new OperationLog(PATH + inxName + LOG_ENDING, PATH + inxName + ENDING);
+        try {
+            log.replay(iHandle);
+        } catch (IOException ex) {
+            log.close();
+            throw ex;
+        }
+        iHandle.setOperationLog(log);
+
+        return iHandle;
+    }
+
     /**
      * <p>Sets the <code>IndexHandle</code> closed.</p>
      *
@@ -105,19 +273,20 @@ public class IndexManager implements Serializable {
      */
     public boolean CloseIndex(IndexHandle indexHandle) {
         if (!indexHandle.isOpen()) return false;
-        if (!indexHandle.isChanged()) {
-            indexHandle.setClosed();
-            return true;
-        }
+        if (!indexHandle.isChanged()) return indexHandle.setClosed();
 
-        if (this.SaveIndex(indexHandle)) {
-            indexHandle.setClosed();
-            return true;
-        } else return false;
+        if (this.SaveIndex(indexHandle)) return indexHandle.setClosed();
+        else return false;
     }
 
     /**
-     * <p>Saves the <code>Index</code> to the Hard Disk.</p>
+     * <p>
+     * Saves the <code>Index</code> to the Hard Disk in the <code>IndexFile</code> format<br />
+     * and waits until the file has been written. The index itself doesn't change,<br />
+     * the very frequent words are only removed from the saved snapshot.
+     * </p>
+     *
+     * @see IndexHandle#SaveInBackground(String)
      *
      * @param indexHandle the <code>IndexHandle</code> of the index that is going to be closed
      * @return informs if the index has been saved successfully
@@ -125,26 +294,28 @@ public class IndexManager implements Serializable {
     public boolean SaveIndex(IndexHandle indexHandle) {
         if (!indexHandle.isOpen()) return false;
         if (!indexHandle.isChanged()) {
-            return true;
+            return indexHandle.WaitForSave();
         }
 
-        ObjectOutputStream writer = null;
-        try {
-            writer =
-                    new ObjectOutputStream(new
-                    FileOutputStream(PATH + indexHandle.getIndexName() + ENDING));
+        indexHandle.SaveInBackground(PATH + indexHandle.getIndexName() + ENDING);
+        return indexHandle.WaitForSave();
+    }
 
-            indexHandle.getIndex().removeFrequentWords();
-            writer.writeObject(indexHandle.getIndex());
-            
+    /**
+     * <p>
+     * Saves the <code>Index</code> to the Hard Disk in the <code>IndexFile</code> format<br />
+     * on a background thread. A snapshot of the index is taken before the method<br />
+     * returns, so the index can be queried and changed while it is written.
+     * </p>
+     *
+     * @see IndexHandle#SaveInBackground(String)
+     *
+     * @param indexHandle the <code>IndexHandle</code> of the index
+     * @return the save, whose result informs if the index has been saved successfully, or null if the index is closed
+     */
+    public Future<Boolean> SaveIndexInBackground(IndexHandle indexHandle) {
+        if (!indexHandle.isOpen()) return null;
 
-            return true;
-        } catch (Exception ex) {
-            return false;
-        } finally {
-            try {
-                writer.close();
-            } catch (IOException ex) {}
-        }
+        return indexHandle.SaveInBackground(PATH + indexHandle.getIndexName() + ENDING);
     }
 }
@@ -0,0 +1,98 @@
+package ixm;
+
+import java.util.ArrayList;
+
+/**
+ * <p>
+ * This interface gives read access to an index, no matter where the index is<br />
+ * kept. The query engines read the index only through it, so they can search an<br />
+ * <code>Index</code> or a <code>CompactIndex</code> in the memory or a <code>MappedIndex</code> on<br />
+ * the disk.
+ * </p>
+ *
+ * @see Index
+ * @see MappedIndex
+ * @see CompactIndex
+ * @see PostingIterator
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public interface IndexReader {
+
+    /**
+     *
+     * @return the index's name
+     */
+    String getName();
+
+    /**
+     *
+     * @return the number of documents in the index
+     */
+    int getDocCount();
+
+    /**
+     *
+     * @return the number of document IDs, so every ID is less than it
+     */
+    int getMaxDocId();
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return a value that shows if the document is in the index
+     */
+    boolean containsDoc(int docId);
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return the document's name
+     */
+    String getDocName(int docId);
+
+    /**
+     *
+     * @param docName the document's name
+     * @return the document's ID or -1 if the document is not known
+     */
+    int getDocId(String docName);
+
+    /**
+     *
+     * @return a new <code>ArrayList</code> with the documents' names in ID order
+     */
+    ArrayList<String> getDocNames();
+
+    /**
+     *
+     * @param word the word
+     * @return the number of documents that contain the word
+     */
+    int getDocFrequency(String word);
+
+    /**
+     *
+     * @param prefix the prefix
+     * @return the words of the index that start with the prefix, in order
+     */
+    ArrayList<String> getWords(String prefix);
+
+    /**
+     *
+     * @param word the word
+     * @return an iterator over the word's posting list or null if the word is not in the index
+     */
+    PostingIterator getPostings(String word);
+
+    /**
+     *
+     * @param word the word
+     * @param docId the document's ID
+     * @return the weight of the word in the document, or 0 if the document doesn't contain the word
+     */
+    double getWeight(String word, int docId);
+}
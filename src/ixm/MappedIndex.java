@@ -0,0 +1,364 @@
+package ixm;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * This class serves the queries straight from an index file (see <code>IndexFile</code>),<br />
+ * which is mapped to the memory with <code>FileChannel.map</code>. Only the document<br />
+ * table is read to the heap when the index is opened. The words are found by<br />
+ * binary search over the mapped dictionary and the posting lists are decoded<br />
+ * from the mapped file, so only the pages that a query touches are read from<br />
+ * the disk and the index may be larger than the heap.<br />
+ * <br />
+ * It is read-only. An <code>IndexHandle</code> reads the whole file to an <code>Index</code><br />
+ * before its first change.
+ * </p>
+ *
+ * @see IndexFile
+ * @see IndexReader
+ * @see IndexManager
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class MappedIndex implements ReadOnlyIndex {
+    private static final long WINDOW = 1L << 30;    // the max size of a mapping of the postings
+    private static final int CACHE_SIZE = 64;       // the number of decoded lists for getWeight
+
+    private String path;                    // the path of the mapped generation of the file
+    private String name;                    // the index's name
+    private RandomAccessFile file;          // the file
+    private IndexFile.Header header;        // the file's header
+    private DocumentDictionary docs;        // the dictionary with the documents
+    private DocumentStatistics docsStats;   // the statistics of the documents
+    private MappedByteBuffer dictionary;    // the mapped dictionary and blocks' offsets
+    private MappedByteBuffer[] postings;    // the mapped postings in windows of WINDOW bytes
+    private WeightCache weights;            // the lists that getWeight has decoded
+
+    /**
+     * <p>
+     * Maps the newest generation of an index file and reads its document table.<br />
+     * The later writes make new generations, so the mapped one is not replaced.
+     * </p>
+     *
+     * @param path the file's path
+     * @throws IOException if the file cannot be mapped or it is not an index file
+     */
+    public MappedIndex(String path) throws IOException {
+        this.path = IndexFile.currentPath(path);
+        this.file = new RandomAccessFile(this.path, "r");
+
+        try {
+            FileChannel channel = file.getChannel();
+            header = IndexFile.readHeader(channel);
+
+            // DOCUMENT TABLE
+            ByteBuffer docTable = map(channel, header.docTableOffset, header.postingsOffset - header.docTableOffset);
+            name = getString(docTable);
+            docs = new DocumentDictionary();
+            docsStats = new DocumentStatistics();
+            for (int i = 0; i < header.docCount; i++) {
+                int docId = docs.add(getString(docTable));
+                docsStats.set(docId, VariableByte.readInt(docTable),
+                        VariableByte.readInt(docTable), VariableByte.readInt(docTable));
+            }
+
+            // POSTINGS
+            long postingsLength = header.dictionaryOffset - header.postingsOffset;
+            postings = new MappedByteBuffer[(int) ((postingsLength + WINDOW - 1) / WINDOW)];
+            for (int i = 0; i < postings.length; i++) {
+                long start = i * WINDOW;
+                postings[i] = map(channel, header.postingsOffset + start, Math.min(WINDOW, postingsLength - start));
+            }
+
+            // DICTIONARY
+            dictionary = map(channel, header.dictionaryOffset, channel.size() - header.dictionaryOffset);
+        } catch (IOException ex) {
+            file.close();
+            throw ex;
+        }
+
+        weights = new WeightCache(this, CACHE_SIZE);
+    }
+
+    /**
+     * <p>
+     * Closes the file. The mappings are released by the garbage collector, so<br />
+     * the mapped generation is deleted by a write after it has been released.
+     * </p>
+     */
+    public void close() {
+        dictionary = null;
+        postings = null;
+        weights.clear();
+        try {
+            file.close();
+        } catch (IOException ex) {}
+    }
+
+    public Index toIndex() throws IOException {
+        return IndexFile.read(path);
+    }
+
+    /**
+     *
+     * @return the path of the mapped generation of the file
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getDocCount() {
+        return docs.size();
+    }
+
+    public int getMaxDocId() {
+        return docs.capacity();
+    }
+
+    public boolean containsDoc(int docId) {
+        return docs.contains(docId);
+    }
+
+    public String getDocName(int docId) {
+        return docs.getName(docId);
+    }
+
+    public int getDocId(String docName) {
+        return docs.getId(docName);
+    }
+
+    public ArrayList<String> getDocNames() {
+        return docs.getNames();
+    }
+
+    public int getDocFrequency(String word) {
+        long[] entry = this.find(word);
+        return entry == null ? 0 : (int) entry[0];
+    }
+
+    /**
+     * <p>
+     * The scan starts from the block of the prefix and stops at the first word<br />
+     * after the words with the prefix.
+     * </p>
+     */
+    public ArrayList<String> getWords(String prefix) {
+        byte[] target = prefix.getBytes(IndexFile.UTF8);
+        ByteBuffer in = dictionary.duplicate();
+        byte[] term = new byte[Math.max(64, target.length)];
+        ArrayList<String> words = new ArrayList<String>();
+
+        int block = Math.max(this.findBlock(target, in), 0);
+        if (block >= header.blockCount) return words;
+
+        in.position(this.blockPosition(block));
+        for (int i = block * IndexFile.BLOCK_SIZE; i < header.termCount; i++) {
+            int shared = VariableByte.readInt(in);
+            int suffix = VariableByte.readInt(in);
+            if (term.length < shared + suffix) term = Arrays.copyOf(term, (shared + suffix) * 2);
+            in.get(term, shared, suffix);
+            VariableByte.readInt(in);
+            VariableByte.readLong(in);
+            VariableByte.readInt(in);
+
+            int length = shared + suffix;
+            if (length >= target.length && compare(term, target.length, target) == 0)
+                words.add(new String(term, 0, length, IndexFile.UTF8));
+            else if (compare(term, length, target) > 0)
+                break;
+        }
+
+        return words;
+    }
+
+    public PostingIterator getPostings(String word) {
+        long[] entry = this.find(word);
+        if (entry == null) return null;
+
+        if (header.version < 2)
+            return new EncodedPostingIterator(this.slice(entry[1], (int) entry[2]), (int) entry[0],
+                    docsStats, docs.size());
+
+        ByteBuffer list = this.slice(entry[1], (int) entry[2]);
+        int boundOccurrences = 1, boundMaxFrequency = 1;
+        if (header.version >= 3) {
+            boundOccurrences = VariableByte.readInt(list);
+            boundMaxFrequency = VariableByte.readInt(list);
+        }
+        EncodedPostingIterator iterator = EncodedPostingIterator.withSkipTable(list, (int) entry[0],
+                docsStats, docs.size(), header.version >= 4);
+        iterator.setBound(boundOccurrences, boundMaxFrequency);
+        return iterator;
+    }
+
+    /**
+     * <p>
+     * The word's list is decoded once and kept in a small cache, so that the<br />
+     * weights of many documents can be found by binary search.
+     * </p>
+     */
+    public double getWeight(String word, int docId) {
+        return weights.getWeight(word, docId);
+    }
+
+    /**
+     * <p>
+     * Finds a word in the mapped dictionary. It finds the last block whose first<br />
+     * word is not after the word by binary search and then it decodes the block.<br />
+     * The words are compared as UTF-8 bytes, which is their order because the<br />
+     * <code>Tokenizer</code> makes only ASCII words.
+     * </p>
+     *
+     * @param word the word
+     * @return the word's number of documents, postings' offset and postings' length or null
+     */
+    private long[] find(String word) {
+        byte[] target = word.getBytes(IndexFile.UTF8);
+        ByteBuffer in = dictionary.duplicate();
+        byte[] term = new byte[Math.max(64, target.length)];
+
+        int block = this.findBlock(target, in);
+        if (block < 0) return null;
+
+        in.position(this.blockPosition(block));
+        int count = Math.min(IndexFile.BLOCK_SIZE, header.termCount - block * IndexFile.BLOCK_SIZE);
+        for (int i = 0; i < count; i++) {
+            int shared = VariableByte.readInt(in);
+            int suffix = VariableByte.readInt(in);
+            if (term.length < shared + suffix) term = Arrays.copyOf(term, (shared + suffix) * 2);
+            in.get(term, shared, suffix);
+            long docFrequency = VariableByte.readInt(in);
+            long offset = VariableByte.readLong(in);
+            long length = VariableByte.readInt(in);
+
+            int cmp = compare(term, shared + suffix, target);
+            if (cmp == 0) return new long[] {docFrequency, offset, length};
+            if (cmp > 0) break;
+        }
+
+        return null;
+    }
+
+    /**
+     *
+     * @param target the word's bytes
+     * @param in a buffer over the mapped dictionary
+     * @return the last block whose first word is not after the word or -1
+     */
+    private int findBlock(byte[] target, ByteBuffer in) {
+        byte[] term = new byte[Math.max(64, target.length)];
+
+        int low = 0, high = header.blockCount - 1, block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            in.position(this.blockPosition(mid));
+            VariableByte.readInt(in);
+            int length = VariableByte.readInt(in);
+            if (term.length < length) term = new byte[length * 2];
+            in.get(term, 0, length);
+
+            if (compare(term, length, target) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else
+                high = mid - 1;
+        }
+
+        return block;
+    }
+
+    /**
+     *
+     * @param block the block's number
+     * @return the block's position in the mapped dictionary
+     */
+    private int blockPosition(int block) {
+        long offset = dictionary.getLong((int) (header.blockIndexOffset - header.dictionaryOffset) + block * 8);
+        return (int) (offset - header.dictionaryOffset);
+    }
+
+    /**
+     * <p>
+     * Returns a posting list from the mapped windows. A list that crosses the end<br />
+     * of a window is mapped by itself.
+     * </p>
+     *
+     * @param offset the list's offset in the postings
+     * @param length the list's length
+     * @return a buffer with the list
+     */
+    private ByteBuffer slice(long offset, int length) {
+        int window = (int) (offset / WINDOW);
+        int start = (int) (offset - window * WINDOW);
+
+        if (start + (long) length <= postings[window].capacity()) {
+            ByteBuffer buffer = postings[window].duplicate();
+            buffer.position(start);
+            buffer.limit(start + length);
+            return buffer.slice();
+        }
+
+        try {
+            return map(file.getChannel(), header.postingsOffset + offset, length);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot map the posting list", ex);
+        }
+    }
+
+    /**
+     *
+     * @param channel the file's channel
+     * @param position the region's position
+     * @param size the region's size
+     * @return the region mapped read-only
+     * @throws IOException if the region cannot be mapped
+     */
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("The index file's section is too large to be mapped");
+
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     *
+     * @param buffer the buffer
+     * @return the string that starts at the buffer's position
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[VariableByte.readInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, IndexFile.UTF8);
+    }
+
+    /**
+     * <p>Compares the first <code>length</code> bytes of a word with another word.</p>
+     *
+     * @param term the word's bytes
+     * @param length the word's length
+     * @param target the other word's bytes
+     * @return a negative number, zero or a positive number
+     */
+    private static int compare(byte[] term, int length, byte[] target) {
+        int n = Math.min(length, target.length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (term[i] & 0xFF) - (target[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return length - target.length;
+    }
+}
@@ -0,0 +1,453 @@
+package ixm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * <p>
+ * This class is the write-ahead log of an index. Every insert and delete of an<br />
+ * <code>IndexHandle</code> is appended to the log, so the changes after the last<br />
+ * snapshot (the index file) are not lost and they are replayed when the index<br />
+ * is opened again. An insert keeps the document's words and frequencies, so<br />
+ * the replay doesn't read the document again.<br />
+ * <br />
+ * The records are kept in the memory and they are written and forced to the<br />
+ * disk together (group commit), by the first writer that waits for them or by<br />
+ * a background thread every <code>SYNC_INTERVAL</code> milliseconds. Every record has a<br />
+ * CRC, so a record that was not written completely is dropped on replay.<br />
+ * <br />
+ * When the log is larger than <code>CHECKPOINT_SIZE</code> bytes, the handle writes a<br />
+ * new snapshot and the log starts again. A snapshot that is written in the<br />
+ * background drops only the records before it with <code>truncate(long)</code>; the<br />
+ * records that have been appended while it was written are kept.
+ * </p>
+ *
+ * @see IndexHandle
+ * @see IndexManager
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class OperationLog {
+    public static final long SYNC_INTERVAL = 100;           // the milliseconds between the background syncs
+    public static final long CHECKPOINT_SIZE = 16L << 20;   // the log's size that starts a checkpoint
+    private static final byte INSERT = 1;                   // the type of an insert record
+    private static final byte DELETE = 2;                   // the type of a delete record
+
+    private String path;                    // the log's path
+    private String indexPath;               // the path of the index file (the snapshot)
+    private RandomAccessFile file;          // the log's file
+    private FileChannel channel;            // the log's channel
+    private ByteArrayOutputStream pending;  // the records that have not been written
+    private long appended;                  // the number of the last appended record
+    private long durable;                   // the number of the last record that is on the disk
+    private boolean syncing;                // shows if a writer is forcing records to the disk
+    private long size;                      // the size of the log with the pending records
+    private ScheduledExecutorService syncer;    // the thread that syncs the log in the background
+
+    /**
+     * <p>
+     * Opens or creates the log of an index file. The log has to be replayed before<br />
+     * new records are appended.
+     * </p>
+     *
+     * @param path the log's path
+     * @param indexPath the path of the index file
+     * @throws IOException if the log cannot be opened
+     */
+    public OperationLog(String path, String indexPath) throws IOException {
+        this.path = path;
+        this.indexPath = indexPath;
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        this.pending = new ByteArrayOutputStream();
+        this.size = channel.size();
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "Operation log syncer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        syncer.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    OperationLog.this.sync();
+                } catch (IOException ex) {
+                    // the next foreground sync fails with the same error
+                }
+            }
+        }, SYNC_INTERVAL, SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>
+     * Replays the log's records on an <code>IndexHandle</code> in a bulk insert. The<br />
+     * records after the first broken record are dropped from the log.
+     * </p>
+     *
+     * @param handle the handle of the index that has been read from the snapshot
+     * @return the number of the replayed records
+     * @throws IOException if the log cannot be read
+     */
+    public synchronized int replay(IndexHandle handle) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(0))));
+        CRC32 crc = new CRC32();
+        long valid = 0;
+        int count = 0;
+
+        while (true) {
+            byte[] body;
+            long checksum;
+            try {
+                int length = in.readInt();
+                checksum = in.readInt() & 0xFFFFFFFFL;
+                if (length <= 0 || length > size - valid - 8) break;
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException ex) {
+                break;
+            }
+            crc.reset();
+            crc.update(body, 0, body.length);
+            if (crc.getValue() != checksum) break;
+
+            if (count == 0) handle.BeginBulkInsert();
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+            byte type = record.readByte();
+            String docName = record.readUTF();
+            if (type == INSERT) {
+                Index document = new Index(handle.getIndexName());
+                int docId = document.getDocumentDictionary().add(docName);
+                int words = record.readInt();
+                int maxFrequency = 0, length = 0;
+                for (int i = 0; i < words; i++) {
+                    String word = record.readUTF();
+                    int frequency = record.readInt();
+                    DocumentList list = new DocumentList();
+                    list.add(docId, frequency);
+                    document.put(word, list);
+                    maxFrequency = Math.max(maxFrequency, frequency);
+                    length += frequency;
+                }
+                document.getDocumentStatistics().set(docId, maxFrequency, length, words);
+                handle.applyInsert(document);
+            } else
+                handle.applyDelete(docName);
+
+            valid += 8 + body.length;
+            count++;
+        }
+        if (count > 0) handle.CommitBulkInsert();
+
+        channel.truncate(valid);
+        channel.position(valid);
+        size = valid;
+        return count;
+    }
+
+    /**
+     * <p>Appends an insert record for every document of an index.</p>
+     *
+     * @param documents the index with the inserted documents
+     * @return the number of the last record
+     * @throws IOException if a record cannot be encoded
+     */
+    public long logInsert(Index documents) throws IOException {
+        DocumentDictionary docs = documents.getDocumentDictionary();
+        ArrayList<ArrayList<String>> words = new ArrayList<ArrayList<String>>();
+        ArrayList<ArrayList<Integer>> frequencies = new ArrayList<ArrayList<Integer>>();
+        for (int id = 0; id < docs.capacity(); id++) {
+            words.add(new ArrayList<String>());
+            frequencies.add(new ArrayList<Integer>());
+        }
+        for (String word : documents.keySet()) {
+            for (DocumentInfo dInfo : documents.get(word)) {
+                words.get(dInfo.GetDocumentId()).add(word);
+                frequencies.get(dInfo.GetDocumentId()).add(dInfo.GetOccurences());
+            }
+        }
+
+        long last = -1;
+        for (int id = 0; id < docs.capacity(); id++) {
+            if (!docs.contains(id)) continue;
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeByte(INSERT);
+            out.writeUTF(docs.getName(id));
+            out.writeInt(words.get(id).size());
+            for (int i = 0; i < words.get(id).size(); i++) {
+                out.writeUTF(words.get(id).get(i));
+                out.writeInt(frequencies.get(id).get(i));
+            }
+            out.flush();
+            last = this.append(body.toByteArray());
+        }
+        return last;
+    }
+
+    /**
+     * <p>Appends a delete record.</p>
+     *
+     * @param docName the deleted document's name
+     * @return the number of the record
+     * @throws IOException if the record cannot be encoded
+     */
+    public long logDelete(String docName) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(DELETE);
+        out.writeUTF(docName);
+        out.flush();
+        return this.append(body.toByteArray());
+    }
+
+    /**
+     *
+     * @param body the record's body
+     * @return the record's number
+     */
+    private synchronized long append(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(body.length);
+        header.putInt((int) crc.getValue());
+        pending.write(header.array(), 0, 8);
+        pending.write(body, 0, body.length);
+        size += 8 + body.length;
+
+        return ++appended;
+    }
+
+    /**
+     * <p>Waits until all the appended records are on the disk.</p>
+     *
+     * @throws IOException if the records cannot be written
+     */
+    public void sync() throws IOException {
+        long last;
+        synchronized (this) {
+            last = appended;
+        }
+        this.sync(last);
+    }
+
+    /**
+     * <p>
+     * Waits until a record is on the disk. If no other writer is forcing the log,<br />
+     * this writer writes and forces all the pending records, so the writers that<br />
+     * wait share one force.
+     * </p>
+     *
+     * @param record the record's number
+     * @throws IOException if the records cannot be written
+     */
+    public void sync(long record) throws IOException {
+        byte[] bytes;
+        long last;
+        synchronized (this) {
+            while (durable < record && syncing) {
+                try {
+                    this.wait();
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException("Interrupted while syncing the operation log");
+                }
+            }
+            if (durable >= record) return;
+
+            syncing = true;
+            bytes = pending.toByteArray();
+            pending.reset();
+            last = appended;
+        }
+
+        boolean done = false;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            channel.force(false);
+            done = true;
+        } finally {
+            synchronized (this) {
+                syncing = false;
+                if (done) {
+                    durable = last;
+                } else {
+                    // the records are written again by the next sync
+                    ByteArrayOutputStream retry = new ByteArrayOutputStream();
+                    retry.write(bytes, 0, bytes.length);
+                    retry.write(pending.toByteArray(), 0, pending.size());
+                    pending = retry;
+                }
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * <p>Empties the log, after a new snapshot has been written.</p>
+     *
+     * @throws IOException if the log cannot be truncated
+     */
+    public synchronized void truncate() throws IOException {
+        while (syncing) {
+            try {
+                this.wait();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException("Interrupted while truncating the operation log");
+            }
+        }
+
+        pending.reset();
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        durable = appended;
+        size = 0;
+    }
+
+    /**
+     * <p>
+     * Drops the records before a position, after a snapshot with them has been<br />
+     * written. The records after the position are written to a new log, which<br />
+     * replaces this one when it is on the disk, so a crash leaves either the old<br />
+     * or the new log. The old log's records are in the snapshot too, and replaying<br />
+     * them again gives the same index.
+     * </p>
+     *
+     * @param position the log's size when the snapshot was taken
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void truncate(long position) throws IOException {
+        if (position >= size) {
+            this.truncate();
+            return;
+        }
+        while (syncing) {
+            try {
+                this.wait();
+            } catch (InterruptedException ex) {
+                throw new InterruptedIOException("Interrupted while truncating the operation log");
+            }
+        }
+
+        // the records of the file and the pending records after the position
+        long written = size - pending.size();
+        ByteBuffer tail = ByteBuffer.allocate((int) (size - position));
+        if (position < written) {
+            tail.limit((int) (written - position));
+            while (tail.hasRemaining())
+                if (channel.read(tail, position + tail.position()) < 0)
+                    throw new EOFException("The operation log is shorter than " + written);
+            tail.limit(tail.capacity());
+        }
+        byte[] bytes = pending.toByteArray();
+        int skip = (int) Math.max(0, position - written);
+        tail.put(bytes, skip, bytes.length - skip);
+        tail.flip();
+
+        File tempFile = new File(path + ".tmp");
+        RandomAccessFile temp = new RandomAccessFile(tempFile, "rw");
+        try {
+            temp.setLength(0);
+            FileChannel tempChannel = temp.getChannel();
+            while (tail.hasRemaining())
+                tempChannel.write(tail);
+            tempChannel.force(true);
+        } finally {
+            temp.close();
+        }
+
+        file.close();
+        Files.move(tempFile.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        file = new RandomAccessFile(path, "rw");
+        channel = file.getChannel();
+        channel.position(channel.size());
+
+        pending.reset();
+        durable = appended;
+        size = channel.size();
+    }
+
+    /**
+     *
+     * @return the log's size with the pending records
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the path of the index file
+     */
+    public String getIndexPath() {
+        return indexPath;
+    }
+
+    /**
+     *
+     * @return shows if the log is large enough for a checkpoint
+     */
+    public synchronized boolean needsCheckpoint() {
+        return size >= CHECKPOINT_SIZE;
+    }
+
+    /**
+     *
+     * @return the log's path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * <p>
+     * Stops the background thread, syncs the log and closes it. The log is<br />
+     * closed even if the last records cannot be synced.
+     * </p>
+     *
+     * @return shows if every appended record has reached the disk
+     */
+    public boolean close() {
+        syncer.shutdown();
+        boolean synced = true;
+        try {
+            this.sync();
+        } catch (IOException ex) {
+            synced = false;
+        } finally {
+            try {
+                file.close();
+            } catch (IOException ex) {}
+        }
+        return synced;
+    }
+}
@@ -0,0 +1,79 @@
+package ixm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * This class builds the partial indexes of a collection in parallel, in a<br />
+ * <code>ForkJoinPool</code>. It splits the documents' files in halves until a task<br />
+ * has few enough files, and every such task builds its own <code>Index</code> on<br />
+ * its own thread. The partial indexes are returned in the order of the files,<br />
+ * so merging them in order with <code>Index.merge</code> gives the same index as<br />
+ * inserting the files one by one.
+ * </p>
+ *
+ * @see IndexHandle
+ * @see Index
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class ParallelIndexBuilder extends RecursiveTask<ArrayList<Index>> {
+    private String name;        // the index's name
+    private File[] files;       // the documents' files
+    private int from;           // the first file of the task
+    private int to;             // the file after the last file of the task
+    private int threshold;      // the max number of files that a task indexes by itself
+
+    /**
+     *
+     * @param name the index's name
+     * @param files the documents' files
+     * @param from the first file of the task
+     * @param to the file after the last file of the task
+     * @param threshold the max number of files that a task indexes by itself
+     */
+    public ParallelIndexBuilder(String name, File[] files, int from, int to, int threshold) {
+        this.name = name;
+        this.files = files;
+        this.from = from;
+        this.to = to;
+        this.threshold = Math.max(threshold, 1);
+    }
+
+    /**
+     * <p>
+     * Builds the partial index of the task's files, or splits the files in two<br />
+     * tasks if they are too many.
+     * </p>
+     *
+     * @return the partial indexes in the order of the files
+     */
+    @Override
+    protected ArrayList<Index> compute() {
+        if (to - from <= threshold) {
+            IndexHandle handle = new IndexHandle(new Index(name));
+            handle.BeginBulkInsert();
+            for (int i = from; i < to; i++)
+                handle.InsertFile(files[i]);
+
+            ArrayList<Index> partials = new ArrayList<Index>();
+            partials.add(handle.getIndex());
+            return partials;
+        }
+
+        int middle = (from + to) >>> 1;
+        ParallelIndexBuilder left = new ParallelIndexBuilder(name, files, from, middle, threshold);
+        ParallelIndexBuilder right = new ParallelIndexBuilder(name, files, middle, to, threshold);
+        left.fork();
+        ArrayList<Index> rightPartials = right.compute();
+        ArrayList<Index> partials = left.join();
+        partials.addAll(rightPartials);
+
+        return partials;
+    }
+}
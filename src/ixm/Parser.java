@@ -6,16 +6,23 @@ import java.util.ArrayList;
 /**
  * <p>
  * This class parses the collections' files and creates their documents in a new<br />
- * directory named "DOCS" in the collection's directory.
+ * directory named "DOCS" in the collection's directory.<br />
+ * <br />
+ * A collection's file is read record by record with a <code>CollectionReader</code> and<br />
+ * every record is parsed by itself with <code>ParsRecord</code>, so the records can<br />
+ * also be indexed straight from the collection's file (see<br />
+ * <code>IndexHandle.InsertCollection</code>).
  * </p>
  *
+ * @see CollectionReader
+ *
  * @author Evripidis Gkanias
  * @author Stergios Giannouloudis
  *
  * @version 1.0
  */
 public class Parser {
-    private static final String ID = ".I";          // the identifier's symbol
+    static final String ID = ".I";                  // the identifier's symbol
     private static final String TITLE = ".T";       // the title's symbol
     private static final String NOTHING_1 = ".A";   //
     private static final String NOTHING_2 = ".B";   //
@@ -30,68 +37,102 @@ public class Parser {
      * @param filePath the collection's file path
      */
     public static void ParsFile(String filePath) {
-        String[] sFilePath = filePath.split("\\\\");
-        int pos = sFilePath.length -1;
-        String dirPath = filePath.replace(sFilePath[pos],"");
-        dirPath += "DOCS\\";
-        String mode = "";
-        
+        String dirPath = DocsDirectory(filePath);
+
         File newDir = new File(dirPath);
         newDir.mkdir();
 
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(new File(filePath)));
-            BufferedWriter writer = null;
-            String line;
-            StringBuilder sb = new StringBuilder("");
-            File file;
+            CollectionReader reader = new CollectionReader(filePath);
+            StringBuilder content = new StringBuilder("");
+            ArrayList<String> records;
+
+            try {
+                while (!(records = reader.readRecords(CollectionReader.CHUNK_SIZE)).isEmpty())
+                    for (String record : records) {
+                        content.setLength(0);
+                        String docName = ParsRecord(record, content);
+                        WriteDocument(dirPath + docName, content);
+                    }
+            } finally {
+                reader.close();
+            }
 
-            while (reader.ready()) {
-                line = reader.readLine().trim();
-                if (line.startsWith(ID)) {
-                    mode = "id";
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
 
-                    try {
-                        writer.write(sb.toString());
-                        writer.close();
+    }
 
-                        sb = new StringBuilder("");
-                    } catch (Exception ex) {}
+    /**
+     * <p>
+     * Parses a record of a collection's file, from its identifier's line to the<br />
+     * next identifier's line. The title and the content are kept, one line after<br />
+     * the other, like in the document's file of <code>ParsFile</code>.
+     * </p>
+     *
+     * @param record the record's lines
+     * @param content the builder that takes the document's text
+     * @return the document's name, the identifier with the ".txt" ending
+     */
+    public static String ParsRecord(String record, StringBuilder content) {
+        String docName = null;
+        String mode = "";
 
-                    String fileName = line.split(" ")[1];
-                    file = new File(dirPath + fileName + ".txt");
-                    file.createNewFile();
-                    writer = new BufferedWriter(new FileWriter(file));
-                    continue;
-                }
-                if (line.startsWith(TITLE)) {
-                    mode = "title";
-                    continue;
-                }
-                if (line.startsWith(NOTHING_1) || line.startsWith(NOTHING_2)) {
-                    mode = "nothing";
-                    continue;
-                }
-                if (line.startsWith(CONTENT)) {
-                    mode = "content";
-                    continue;
-                }
-                if (mode.equals("nothing")) continue;
+        for (String line : record.split("\n")) {
+            line = line.trim();
+            if (line.startsWith(ID)) {
+                mode = "id";
+                docName = line.split(" ")[1] + ".txt";
+                continue;
+            }
+            if (line.startsWith(TITLE)) {
+                mode = "title";
+                continue;
+            }
+            if (line.startsWith(NOTHING_1) || line.startsWith(NOTHING_2)) {
+                mode = "nothing";
+                continue;
+            }
+            if (line.startsWith(CONTENT)) {
+                mode = "content";
+                continue;
+            }
+            if (mode.equals("nothing")) continue;
 
-                sb.append(line);
-                sb.append("\n");
+            content.append(line);
+            content.append("\n");
+        }
 
-            }
+        return docName;
+    }
 
-            writer.write(sb.toString());
+    /**
+     *
+     * @param filePath the collection's file path
+     * @return the path of the "DOCS" directory in the collection's directory
+     */
+    public static String DocsDirectory(String filePath) {
+        String[] sFilePath = filePath.split("\\\\");
+        int pos = sFilePath.length -1;
+        String dirPath = filePath.replace(sFilePath[pos],"");
+        return dirPath + "DOCS\\";
+    }
 
+    /**
+     * <p>Writes the text of a document to its file.</p>
+     *
+     * @param docPath the document's file path
+     * @param content the document's text
+     * @throws IOException if the file cannot be written
+     */
+    static void WriteDocument(String docPath, CharSequence content) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new FileWriter(new File(docPath)));
+        try {
+            writer.append(content);
+        } finally {
             writer.close();
-            reader.close();
-
-        } catch (IOException ex) {
-            ex.printStackTrace();
         }
-
     }
 
     /**
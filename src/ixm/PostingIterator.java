@@ -0,0 +1,93 @@
+package ixm;
+
+/**
+ * <p>
+ * This interface walks over the posting list of a word in document ID order.<br />
+ * Before the first call of <code>nextDoc</code> the iterator is before the first<br />
+ * document, and after the last document <code>docId</code> is <code>NO_MORE_DOCS</code>.<br />
+ * <br />
+ * With <code>advance</code> an iterator jumps over the documents before a target, so<br />
+ * a short list can be intersected with a long list without reading all of it.<br />
+ * <br />
+ * Every list knows an upper bound of its weights (<code>maxWeight</code>), so a<br />
+ * ranked query can skip the documents that cannot get a high enough score.<br />
+ * The list is also split in blocks, the ones of its skip pointers, and every<br />
+ * block knows the max weight of its documents (<code>blockMaxWeight</code>), which<br />
+ * is tighter than the max weight of the whole list.
+ * </p>
+ *
+ * @see IndexReader
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public interface PostingIterator {
+    int NO_MORE_DOCS = Integer.MAX_VALUE;   // the document ID after the last document
+
+    /**
+     * <p>Moves to the next document of the list.</p>
+     *
+     * @return the next document's ID or <code>NO_MORE_DOCS</code>
+     */
+    int nextDoc();
+
+    /**
+     * <p>
+     * Moves to the first document whose ID is not less than a target. If the<br />
+     * current document is not before the target, the iterator stays there.
+     * </p>
+     *
+     * @param target the target document's ID
+     * @return the new current document's ID or <code>NO_MORE_DOCS</code>
+     */
+    int advance(int target);
+
+    /**
+     *
+     * @return the current document's ID, -1 before the first document
+     */
+    int docId();
+
+    /**
+     *
+     * @return the number of occurrences of the word in the current document
+     */
+    int occurrences();
+
+    /**
+     *
+     * @return the weight of the word in the current document
+     */
+    double weight();
+
+    /**
+     *
+     * @return a weight that is not less than the weight of any document of the list
+     */
+    double maxWeight();
+
+    /**
+     * <p>
+     * Moves to the block of the first document whose ID is not less than a<br />
+     * target, without moving to the document. The targets must not decrease.
+     * </p>
+     *
+     * @param target the target document's ID
+     * @return the ID of the block's last document, <code>NO_MORE_DOCS</code> for the last block
+     */
+    int advanceBlock(int target);
+
+    /**
+     *
+     * @return a weight that is not less than the weight of any document of the current block
+     */
+    double blockMaxWeight();
+
+    /**
+     *
+     * @return the number of documents of the list
+     */
+    int documentFrequency();
+}
@@ -0,0 +1,33 @@
+package ixm;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * This interface is an index that can be queried but not changed, like a<br />
+ * <code>MappedIndex</code> or a <code>CompactIndex</code>. An <code>IndexHandle</code> turns it<br />
+ * into an <code>Index</code> before its first change.
+ * </p>
+ *
+ * @see IndexHandle
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public interface ReadOnlyIndex extends IndexReader {
+
+    /**
+     * <p>Reads the whole index to an <code>Index</code>. The weights are not computed.</p>
+     *
+     * @return the index structure
+     * @throws IOException if the index cannot be read
+     */
+    Index toIndex() throws IOException;
+
+    /**
+     * <p>Releases the resources of the index.</p>
+     */
+    void close();
+}
@@ -0,0 +1,193 @@
+package ixm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * <p>
+ * This class is an immutable part of a <code>SegmentedIndex</code>. It keeps the<br />
+ * compressed posting lists of some documents with their global IDs, in the order<br />
+ * of the words of a <code>TermDictionary</code>. Its lists<br />
+ * never change; a document that is deleted is only marked in the segment's<br />
+ * deleted set and it is dropped when the segment is merged.
+ * </p>
+ *
+ * @see SegmentedIndex
+ * @see CompressedPostings
+ * @see TermDictionary
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+class Segment {
+    private long number;                // the segment's number, which names its file (see SegmentFile)
+    private TermDictionary dictionary;  // the sorted words
+    private CompressedPostings[] postings;  // the compressed posting lists in the words' order
+    private BitSet docs;                // the documents of the segment
+    private BitSet deleted;             // the documents that have been deleted since the segment was made
+    private long size;                  // the number of postings
+    private HashMap<String,Integer> liveDocFrequency;   // the counted numbers of live documents of the words
+    boolean merging;                    // shows if the segment is being merged
+
+    /**
+     *
+     * @param number the segment's number
+     * @param postings the compressed posting lists
+     * @param docs the documents of the segment
+     * @param stats the statistics of the documents
+     */
+    Segment(long number, HashMap<String,CompressedPostings> postings, BitSet docs, DocumentStatistics stats) {
+        this.number = number;
+        String[] words = postings.keySet().toArray(new String[postings.size()]);
+        Arrays.sort(words);
+        this.dictionary = new TermDictionary(words);
+        this.postings = new CompressedPostings[words.length];
+        this.docs = docs;
+        this.deleted = new BitSet();
+        this.liveDocFrequency = new HashMap<String,Integer>();
+        for (int i = 0; i < words.length; i++) {
+            CompressedPostings list = postings.get(words[i]);
+            list.trim(stats);
+            size += list.getDocFrequency();
+            this.postings[i] = list;
+        }
+    }
+
+    /**
+     * <p>
+     * Copies a segment for a snapshot. The lists are shared, because they never<br />
+     * change, and the deleted set is copied.
+     * </p>
+     *
+     * @param other the other segment
+     */
+    Segment(Segment other) {
+        this.number = other.number;
+        this.dictionary = other.dictionary;
+        this.postings = other.postings;
+        this.docs = other.docs;
+        this.deleted = (BitSet) other.deleted.clone();
+        this.size = other.size;
+        this.liveDocFrequency = new HashMap<String,Integer>();
+    }
+
+    /**
+     * <p>Marks a document of the segment as deleted.</p>
+     *
+     * @param docId the document's ID
+     * @return a value that shows if the document was live in the segment
+     */
+    boolean delete(int docId) {
+        if (!docs.get(docId) || deleted.get(docId)) return false;
+
+        deleted.set(docId);
+        liveDocFrequency.clear();
+        return true;
+    }
+
+    /**
+     *
+     * @param docId the document's ID
+     * @return a value that shows if the document is in the segment and not deleted
+     */
+    boolean isLive(int docId) {
+        return docs.get(docId) && !deleted.get(docId);
+    }
+
+    /**
+     *
+     * @param word the word
+     * @param stats the statistics of the documents
+     * @return the number of live documents of the segment that contain the word
+     */
+    int getDocFrequency(String word, DocumentStatistics stats) {
+        int ordinal = dictionary.find(word);
+        if (ordinal < 0) return 0;
+        CompressedPostings list = postings[ordinal];
+        if (deleted.isEmpty()) return list.getDocFrequency();
+
+        Integer count = liveDocFrequency.get(word);
+        if (count == null) {
+            int live = 0;
+            PostingIterator iterator = list.iterator(stats, 0);
+            while (iterator.nextDoc() != PostingIterator.NO_MORE_DOCS)
+                if (!deleted.get(iterator.docId())) live++;
+            liveDocFrequency.put(word, count = live);
+        }
+        return count;
+    }
+
+    /**
+     * <p>The iterator returns the deleted documents too.</p>
+     *
+     * @param word the word
+     * @param stats the statistics of the documents
+     * @param docCount the number of documents in the index
+     * @return an iterator over the word's list or null if the word is not in the segment
+     */
+    PostingIterator getPostings(String word, DocumentStatistics stats, int docCount) {
+        int ordinal = dictionary.find(word);
+        return ordinal < 0 ? null : postings[ordinal].iterator(stats, docCount);
+    }
+
+    /**
+     *
+     * @return the words of the segment in order
+     */
+    ArrayList<String> getWords() {
+        return dictionary.range("", null);
+    }
+
+    /**
+     *
+     * @param prefix the prefix
+     * @return the words of the segment that start with the prefix, in order
+     */
+    ArrayList<String> getWords(String prefix) {
+        return dictionary.prefix(prefix);
+    }
+
+    /**
+     *
+     * @return the compressed posting lists in the order of <code>getWords</code>
+     */
+    CompressedPostings[] getLists() {
+        return postings;
+    }
+
+    /**
+     *
+     * @return the documents of the segment, deleted or not
+     */
+    BitSet getDocs() {
+        return docs;
+    }
+
+    /**
+     *
+     * @return a copy of the deleted documents
+     */
+    BitSet getDeleted() {
+        return (BitSet) deleted.clone();
+    }
+
+    /**
+     *
+     * @return the segment's number
+     */
+    long getNumber() {
+        return number;
+    }
+
+    /**
+     *
+     * @return the number of postings
+     */
+    long size() {
+        return size;
+    }
+}
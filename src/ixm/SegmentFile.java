@@ -0,0 +1,368 @@
+package ixm;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * <p>
+ * This class writes and reads a <code>SegmentedIndex</code> as its segments. A segment<br />
+ * never changes, so it is written once to its own file, and a manifest lists<br />
+ * the segments of the index. Both start with a fixed size magic number and<br />
+ * version, and the rest are <code>VariableByte</code> numbers:
+ * </p>
+ * <ul>
+ * <li><b>Manifest:</b> the index's name, the number of the next new segment, the<br />
+ * name of every document ID and, if the document is contained, its max<br />
+ * frequency, length and number of unique words. Then the number of every<br />
+ * segment and its deleted documents. The manifest is written as a generation<br />
+ * of the index file (see <code>IndexFile</code>), so it replaces a whole index file.</li>
+ * <li><b>Segment</b> (<code>name.n.seg</code> next to the index file): the segment's<br />
+ * documents and the posting list of every word, in the order of the words,<br />
+ * like the postings of an index file without skip pointers. The skip pointers<br />
+ * and the max weights are found again when the segment is read.</li>
+ * </ul>
+ * <p>
+ * A save writes only the segments that are not in the last manifest, which are<br />
+ * the ones that have been flushed or merged since then, and a new manifest.<br />
+ * When the new manifest is the newest generation, the files of the segments<br />
+ * that it doesn't list are deleted.
+ * </p>
+ *
+ * @see SegmentedIndex
+ * @see IndexFile
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+class SegmentFile {
+    static final int MANIFEST_MAGIC = 0x41524d46;   // "ARMF"
+    static final int SEGMENT_MAGIC = 0x41525347;    // "ARSG"
+    static final int VERSION = 1;                   // the version of the format
+    static final int MAGIC_SIZE = 8;                // the size of the magic number and the version
+    static final String ENDING = ".seg";            // the segments' ending
+
+    /**
+     * <p>
+     * Writes the segments of a snapshot (see <code>SegmentedIndex.snapshot</code>) that<br />
+     * are not in the index file's manifest, and then a new manifest.
+     * </p>
+     *
+     * @param index the snapshot, without buffered documents
+     * @param path the index file's path
+     * @throws IOException if a file cannot be written
+     */
+    static void write(SegmentedIndex index, String path) throws IOException {
+        HashSet<Long> written = isManifest(path) ? readSegmentNumbers(path) : new HashSet<Long>();
+        ArrayList<Segment> segments = index.getSegments();
+        HashSet<Long> numbers = new HashSet<Long>();
+        for (Segment segment : segments) {
+            numbers.add(segment.getNumber());
+            if (!written.contains(segment.getNumber()))
+                writeSegment(segment, segmentPath(path, segment.getNumber()));
+        }
+
+        DocumentDictionary docs = index.getDocumentDictionary();
+        DocumentStatistics stats = index.getDocumentStatistics();
+        File tempFile = new File(path + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            writeMagic(channel, MANIFEST_MAGIC);
+            IndexFile.ChannelWriter out = new IndexFile.ChannelWriter(channel, MAGIC_SIZE);
+
+            out.putString(index.getName());
+            out.putLong(index.getNextSegment());
+            out.putInt(docs.capacity());
+            for (int id = 0; id < docs.capacity(); id++) {
+                out.putString(docs.getName(id));
+                out.putInt(docs.contains(id) ? 1 : 0);
+                if (!docs.contains(id)) continue;
+                out.putInt(stats.getMaxFrequency(id));
+                out.putInt(stats.getLength(id));
+                out.putInt(stats.getUniqueTerms(id));
+            }
+
+            out.putInt(segments.size());
+            for (Segment segment : segments) {
+                out.putLong(segment.getNumber());
+                putDocs(out, segment.getDeleted());
+            }
+            out.flush();
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+
+        IndexFile.commit(tempFile, path);
+        deleteSegments(path, numbers);
+    }
+
+    /**
+     * <p>Reads a segmented index from its manifest and the files of its segments.</p>
+     *
+     * @param path the index file's path
+     * @return the segmented index
+     * @throws IOException if a file cannot be read or the index file is not a manifest
+     */
+    static SegmentedIndex read(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(IndexFile.currentPath(path), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            readMagic(channel, MANIFEST_MAGIC);
+            IndexFile.ChannelReader in = new IndexFile.ChannelReader(channel, MAGIC_SIZE);
+
+            SegmentedIndex index = new SegmentedIndex(in.getString());
+            long nextSegment = in.getLong();
+            DocumentDictionary docs = new DocumentDictionary();
+            DocumentStatistics stats = new DocumentStatistics();
+            int capacity = in.getInt();
+            for (int i = 0; i < capacity; i++) {
+                int docId = docs.add(in.getString());
+                if (in.getInt() != 0)
+                    stats.set(docId, in.getInt(), in.getInt(), in.getInt());
+                else
+                    docs.remove(docId);
+            }
+
+            ArrayList<Segment> segments = new ArrayList<Segment>();
+            int segmentCount = in.getInt();
+            for (int i = 0; i < segmentCount; i++) {
+                long number = in.getLong();
+                BitSet deleted = getDocs(in);
+                Segment segment = readSegment(segmentPath(path, number), number, stats);
+                for (int id = deleted.nextSetBit(0); id >= 0; id = deleted.nextSetBit(id + 1))
+                    segment.delete(id);
+                segments.add(segment);
+            }
+            index.setSegments(docs, stats, segments, nextSegment);
+
+            return index;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * <p>Checks if the newest generation of an index file is a manifest.</p>
+     *
+     * @param path the index file's path
+     * @return true if the index has been written as segments
+     */
+    static boolean isManifest(String path) {
+        if (!IndexFile.exists(path)) return false;
+
+        try {
+            RandomAccessFile file = new RandomAccessFile(IndexFile.currentPath(path), "r");
+            try {
+                readMagic(file.getChannel(), MANIFEST_MAGIC);
+                return true;
+            } finally {
+                file.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * <p>Deletes the files of an index's segments, except for some segments.</p>
+     *
+     * @param path the index file's path
+     * @param keep the numbers of the segments that are kept
+     * @return true if all the other files have been deleted
+     */
+    static boolean deleteSegments(String path, HashSet<Long> keep) {
+        boolean deleted = true;
+        for (long number : IndexFile.listNumbered(path, ENDING))
+            if (!keep.contains(number)) deleted = new File(segmentPath(path, number)).delete() && deleted;
+        return deleted;
+    }
+
+    /**
+     * <p>Reads the numbers of the segments that a manifest lists.</p>
+     *
+     * @param path the index file's path
+     * @return the numbers of the segments
+     * @throws IOException if the manifest cannot be read
+     */
+    private static HashSet<Long> readSegmentNumbers(String path) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(IndexFile.currentPath(path), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            readMagic(channel, MANIFEST_MAGIC);
+            IndexFile.ChannelReader in = new IndexFile.ChannelReader(channel, MAGIC_SIZE);
+
+            in.getString();
+            in.getLong();
+            int capacity = in.getInt();
+            for (int i = 0; i < capacity; i++) {
+                in.getString();
+                if (in.getInt() == 0) continue;
+                in.getInt();
+                in.getInt();
+                in.getInt();
+            }
+
+            HashSet<Long> numbers = new HashSet<Long>();
+            int segmentCount = in.getInt();
+            for (int i = 0; i < segmentCount; i++) {
+                numbers.add(in.getLong());
+                getDocs(in);
+            }
+            return numbers;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * <p>
+     * Writes a segment to its file. The segment is written to a temporary file<br />
+     * first, so its file is either complete or missing.
+     * </p>
+     *
+     * @param segment the segment
+     * @param path the segment file's path
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeSegment(Segment segment, String path) throws IOException {
+        ArrayList<String> words = segment.getWords();
+        CompressedPostings[] lists = segment.getLists();
+        File tempFile = new File(path + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(tempFile, "rw");
+        try {
+            file.setLength(0);
+            FileChannel channel = file.getChannel();
+            writeMagic(channel, SEGMENT_MAGIC);
+            IndexFile.ChannelWriter out = new IndexFile.ChannelWriter(channel, MAGIC_SIZE);
+
+            putDocs(out, segment.getDocs());
+            out.putInt(words.size());
+            for (int i = 0; i < words.size(); i++) {
+                out.putString(words.get(i));
+                out.putInt(lists[i].getDocFrequency());
+                out.putBytes(lists[i].getData(), 0, lists[i].getSizeInBytes());
+            }
+            out.flush();
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+
+        Files.move(tempFile.toPath(), new File(path).toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * <p>Reads a segment from its file.</p>
+     *
+     * @param path the segment file's path
+     * @param number the segment's number
+     * @param stats the statistics of the documents
+     * @return the segment
+     * @throws IOException if the file cannot be read or it is not a segment file
+     */
+    private static Segment readSegment(String path, long number, DocumentStatistics stats) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            readMagic(channel, SEGMENT_MAGIC);
+            IndexFile.ChannelReader in = new IndexFile.ChannelReader(channel, MAGIC_SIZE);
+
+            BitSet docs = getDocs(in);
+            HashMap<String,CompressedPostings> postings = new HashMap<String,CompressedPostings>();
+            int wordCount = in.getInt();
+            for (int i = 0; i < wordCount; i++) {
+                String word = in.getString();
+                int docFrequency = in.getInt();
+                CompressedPostings list = new CompressedPostings();
+                int docId = 0;
+                for (int j = 0; j < docFrequency; j++) {
+                    docId += in.getInt();
+                    list.add(docId, in.getInt());
+                }
+                postings.put(word, list);
+            }
+
+            return new Segment(number, postings, docs, stats);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * @param path the index file's path
+     * @param number the segment's number
+     * @return the path of the segment's file
+     */
+    private static String segmentPath(String path, long number) {
+        return IndexFile.withoutEnding(path) + "." + number + ENDING;
+    }
+
+    /**
+     * <p>Writes a set of documents as their number and the gaps of their IDs.</p>
+     */
+    private static void putDocs(IndexFile.ChannelWriter out, BitSet docs) throws IOException {
+        out.putInt(docs.cardinality());
+        int last = 0;
+        for (int id = docs.nextSetBit(0); id >= 0; id = docs.nextSetBit(id + 1)) {
+            out.putInt(id - last);
+            last = id;
+        }
+    }
+
+    /**
+     * <p>Reads a set of documents that <code>putDocs</code> has written.</p>
+     */
+    private static BitSet getDocs(IndexFile.ChannelReader in) throws IOException {
+        BitSet docs = new BitSet();
+        int count = in.getInt();
+        int id = 0;
+        for (int i = 0; i < count; i++) {
+            id += in.getInt();
+            docs.set(id);
+        }
+        return docs;
+    }
+
+    /**
+     * <p>Writes the magic number and the version at the start of a file.</p>
+     */
+    private static void writeMagic(FileChannel channel, int magic) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAGIC_SIZE);
+        buffer.putInt(magic);
+        buffer.putInt(VERSION);
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer, buffer.position());
+    }
+
+    /**
+     * <p>Reads and checks the magic number and the version at the start of a file.</p>
+     */
+    private static void readMagic(FileChannel channel, int magic) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAGIC_SIZE);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, buffer.position()) < 0)
+                throw new EOFException("Not a segments file");
+        buffer.flip();
+
+        if (buffer.getInt() != magic)
+            throw new IOException("Not a segments file");
+        int version = buffer.getInt();
+        if (version < 1 || version > VERSION)
+            throw new IOException("Unsupported segments file version");
+    }
+}
@@ -0,0 +1,734 @@
+package ixm;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * This class is an index that is split into segments, so that a change doesn't<br />
+ * touch the whole index. The new documents are put to a small buffer in the<br />
+ * memory. When the buffer has <code>FLUSH_DOCS</code> documents it is flushed to an<br />
+ * immutable <code>Segment</code> with compressed posting lists. A deleted document<br />
+ * is only marked as deleted in its segment.<br />
+ * <br />
+ * The segments are merged in tiers on a background thread. The segments with<br />
+ * about the same number of postings are in the same tier, and when a tier has<br />
+ * <code>MERGE_FACTOR</code> segments they are merged into one segment of the next tier,<br />
+ * without their deleted documents. So every posting is written once for every<br />
+ * tier and the number of segments stays logarithmic.<br />
+ * <br />
+ * The documents have global IDs and statistics, so the queries read the lists<br />
+ * of a word from all the segments and the buffer as one list in ID order.<br />
+ * Every segment has a number that names its file, so a save writes only the<br />
+ * segments that are not in the last save (see <code>SegmentFile</code>).
+ * </p>
+ *
+ * @see Segment
+ * @see SegmentFile
+ * @see IndexHandle
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class SegmentedIndex implements IndexReader {
+    public static final int FLUSH_DOCS = 256;       // the number of buffered documents that are flushed
+    public static final int MERGE_FACTOR = 4;       // the number of segments of a tier that are merged
+    private static final long TIER_SIZE = 4096;     // the number of postings of the first tier
+    private static final int CACHE_SIZE = 64;       // the number of decoded lists for getWeight
+
+    private String name;                        // the index's name
+    private DocumentDictionary docs;            // the dictionary with the documents
+    private DocumentStatistics docsStats;       // the statistics of the documents
+    private HashMap<String,DocumentList> buffer;    // the posting lists of the buffered documents
+    private BitSet bufferDocs;                  // the buffered documents
+    private ArrayList<Segment> segments;        // the flushed segments
+    private long nextSegment;                   // the number of the next new segment
+    private int runningMerges;                  // the number of merges that have not finished
+    private ExecutorService merger;             // the thread that merges the segments
+    private WeightCache weights;                // the lists that getWeight has decoded
+
+    /**
+     * <p>Creates an empty index.</p>
+     *
+     * @param name the index's name
+     */
+    public SegmentedIndex(String name) {
+        this.name = name;
+        this.docs = new DocumentDictionary();
+        this.docsStats = new DocumentStatistics();
+        this.buffer = new HashMap<String,DocumentList>();
+        this.bufferDocs = new BitSet();
+        this.segments = new ArrayList<Segment>();
+        this.weights = new WeightCache(this, CACHE_SIZE);
+        this.merger = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "Segment merger");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * <p>Creates an index with one segment that has the documents of an <code>Index</code>.</p>
+     *
+     * @param index the index
+     */
+    public SegmentedIndex(Index index) {
+        this(index.getName());
+        this.reset(index);
+    }
+
+    /**
+     * <p>
+     * Adds the documents of an <code>Index</code> to the buffer. A document that is<br />
+     * already in the index is replaced. If the buffer is full it is flushed.
+     * </p>
+     *
+     * @param partial the index with the new documents
+     */
+    public synchronized void add(Index partial) {
+        DocumentDictionary partialDocs = partial.getDocumentDictionary();
+        DocumentStatistics partialStats = partial.getDocumentStatistics();
+        int[] ids = new int[partialDocs.capacity()];
+
+        for (int id = 0; id < ids.length; id++) {
+            if (!partialDocs.contains(id)) continue;
+
+            String docName = partialDocs.getName(id);
+            this.removeDoc(docName);
+            ids[id] = docs.add(docName);
+            docsStats.copy(partialStats, id, ids[id]);
+            bufferDocs.set(ids[id]);
+        }
+
+        for (Map.Entry<String,DocumentList> entry : partial.entrySet()) {
+            DocumentList list = buffer.get(entry.getKey());
+            if (list == null) {
+                list = new DocumentList();
+                buffer.put(entry.getKey(), list);
+            }
+            for (DocumentInfo dInfo : entry.getValue())
+                list.add(ids[dInfo.GetDocumentId()], dInfo.GetOccurences());
+        }
+        weights.clear();
+
+        if (bufferDocs.cardinality() >= FLUSH_DOCS) this.flush();
+    }
+
+    /**
+     * <p>Deletes a document from the buffer or marks it as deleted in its segment.</p>
+     *
+     * @param docName the document's name
+     * @return the number of the document's words or -1 if the document is not in the index
+     */
+    public synchronized long removeDoc(String docName) {
+        int docId = docs.getId(docName);
+        if (!docs.remove(docId)) return -1;
+
+        long counter = docsStats.getUniqueTerms(docId);
+        if (bufferDocs.get(docId)) {
+            bufferDocs.clear(docId);
+            String[] words = buffer.keySet().toArray(new String[buffer.size()]);
+            for (String word : words) {
+                DocumentList list = buffer.get(word);
+                list.removeDoc(docId);
+                if (list.size() == 0) buffer.remove(word);
+            }
+        }
+        for (Segment segment : segments)
+            segment.delete(docId);
+        docsStats.clear(docId);
+        weights.clear();
+
+        return counter;
+    }
+
+    /**
+     * <p>Flushes the buffer to a new segment and starts the merges that are needed.</p>
+     */
+    public synchronized void flush() {
+        if (bufferDocs.isEmpty()) return;
+
+        HashMap<String,CompressedPostings> postings = new HashMap<String,CompressedPostings>();
+        for (Map.Entry<String,DocumentList> entry : buffer.entrySet()) {
+            CompressedPostings list = new CompressedPostings();
+            for (DocumentInfo dInfo : entry.getValue())
+                list.add(dInfo.GetDocumentId(), dInfo.GetOccurences());
+            postings.put(entry.getKey(), list);
+        }
+        segments.add(new Segment(nextSegment++, postings, bufferDocs, docsStats));
+
+        buffer = new HashMap<String,DocumentList>();
+        bufferDocs = new BitSet();
+        this.mergeTiers();
+    }
+
+    /**
+     * <p>
+     * Finds the tiers that have <code>MERGE_FACTOR</code> segments which are not being<br />
+     * merged and merges them on the background thread. The merges get a copy of<br />
+     * the documents' statistics, because the index's statistics change while<br />
+     * they run.
+     * </p>
+     */
+    private void mergeTiers() {
+        if (merger.isShutdown()) return;
+
+        DocumentStatistics stats = null;
+        HashMap<Integer,ArrayList<Segment>> tiers = new HashMap<Integer,ArrayList<Segment>>();
+        for (Segment segment : segments) {
+            if (segment.merging) continue;
+
+            int tier = 0;
+            for (long size = segment.size() / TIER_SIZE; size >= MERGE_FACTOR; size /= MERGE_FACTOR)
+                tier++;
+            ArrayList<Segment> tierSegments = tiers.get(tier);
+            if (tierSegments == null) {
+                tierSegments = new ArrayList<Segment>();
+                tiers.put(tier, tierSegments);
+            }
+            tierSegments.add(segment);
+
+            if (tierSegments.size() == MERGE_FACTOR) {
+                final ArrayList<Segment> sources = new ArrayList<Segment>(tierSegments);
+                final ArrayList<BitSet> deleted = new ArrayList<BitSet>();
+                for (Segment source : sources) {
+                    source.merging = true;
+                    deleted.add(source.getDeleted());
+                }
+                tierSegments.clear();
+                if (stats == null) stats = new DocumentStatistics(docsStats);
+                final DocumentStatistics mergeStats = stats;
+                final long number = nextSegment++;
+
+                runningMerges++;
+                merger.execute(new Runnable() {
+                    public void run() {
+                        Segment merged = null;
+                        try {
+                            merged = SegmentedIndex.this.merge(number, sources, deleted, mergeStats);
+                        } finally {
+                            SegmentedIndex.this.commitMerge(sources, deleted, merged);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Merges segments into one segment without the documents that were deleted<br />
+     * when the merge started. It reads only immutable lists, the deleted sets<br />
+     * and the statistics that were copied when the merge started, so it runs<br />
+     * without the index's lock.
+     * </p>
+     *
+     * @param number the new segment's number
+     * @param sources the segments
+     * @param deleted the deleted documents of every segment
+     * @param stats the copied statistics of the documents
+     * @return the new segment
+     */
+    private Segment merge(long number, ArrayList<Segment> sources, ArrayList<BitSet> deleted, DocumentStatistics stats) {
+        BitSet mergedDocs = new BitSet();
+        HashSet<String> words = new HashSet<String>();
+        for (int i = 0; i < sources.size(); i++) {
+            BitSet live = (BitSet) sources.get(i).getDocs().clone();
+            live.andNot(deleted.get(i));
+            mergedDocs.or(live);
+            words.addAll(sources.get(i).getWords());
+        }
+
+        HashMap<String,CompressedPostings> postings = new HashMap<String,CompressedPostings>();
+        for (String word : words) {
+            ArrayList<PostingIterator> iterators = new ArrayList<PostingIterator>();
+            ArrayList<BitSet> iteratorsDeleted = new ArrayList<BitSet>();
+            for (int i = 0; i < sources.size(); i++) {
+                PostingIterator iterator = sources.get(i).getPostings(word, stats, 0);
+                if (iterator == null) continue;
+                iterators.add(iterator);
+                iteratorsDeleted.add(deleted.get(i));
+            }
+
+            CompressedPostings list = new CompressedPostings();
+            PostingIterator iterator = new MergedIterator(iterators, iteratorsDeleted, 0, stats, 0);
+            while (iterator.nextDoc() != PostingIterator.NO_MORE_DOCS)
+                list.add(iterator.docId(), iterator.occurrences());
+            if (list.getDocFrequency() > 0) postings.put(word, list);
+        }
+
+        return new Segment(number, postings, mergedDocs, stats);
+    }
+
+    /**
+     * <p>
+     * Replaces the merged segments by the new segment. The documents that have<br />
+     * been deleted while the segments were merged are marked in the new segment.
+     * </p>
+     *
+     * @param sources the merged segments
+     * @param deleted the deleted documents of every segment when the merge started
+     * @param merged the new segment or null if the merge failed
+     */
+    private synchronized void commitMerge(ArrayList<Segment> sources, ArrayList<BitSet> deleted, Segment merged) {
+        runningMerges--;
+
+        if (merged == null) {
+            for (Segment source : sources)
+                source.merging = false;
+        } else {
+            for (int i = 0; i < sources.size(); i++) {
+                BitSet newDeleted = sources.get(i).getDeleted();
+                newDeleted.andNot(deleted.get(i));
+                for (int id = newDeleted.nextSetBit(0); id >= 0; id = newDeleted.nextSetBit(id + 1))
+                    merged.delete(id);
+            }
+            segments.removeAll(sources);
+            if (!merged.getDocs().isEmpty()) segments.add(merged);
+            this.mergeTiers();
+        }
+
+        this.notifyAll();
+    }
+
+    /**
+     * <p>Waits until the running merges finish.</p>
+     */
+    public synchronized void waitForMerges() {
+        while (runningMerges > 0) {
+            try {
+                this.wait();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Flushes the buffer and makes a snapshot of the index. The segments don't<br />
+     * change, so the snapshot shares them and copies only their deleted sets and<br />
+     * the documents. The changes and the merges of this index don't change the<br />
+     * snapshot, so it can be read to an <code>Index</code> by another thread.
+     * </p>
+     *
+     * @return the snapshot of the index
+     */
+    public synchronized SegmentedIndex snapshot() {
+        this.flush();
+
+        SegmentedIndex copy = new SegmentedIndex(name);
+        copy.docs = new DocumentDictionary(docs);
+        copy.docsStats = new DocumentStatistics(docsStats);
+        copy.nextSegment = nextSegment;
+        for (Segment segment : segments)
+            copy.segments.add(new Segment(segment));
+
+        return copy;
+    }
+
+    /**
+     * <p>Replaces the documents and the segments with the ones of an <code>Index</code>.</p>
+     *
+     * @param index the index
+     */
+    private void reset(Index index) {
+        DocumentDictionary indexDocs = index.getDocumentDictionary();
+        DocumentStatistics indexStats = index.getDocumentStatistics();
+        docs = new DocumentDictionary();
+        docsStats = new DocumentStatistics();
+        for (int id = 0; id < indexDocs.capacity(); id++) {
+            docs.add(indexDocs.getName(id));
+            if (indexDocs.contains(id))
+                docsStats.copy(indexStats, id, id);
+            else
+                docs.remove(id);
+        }
+
+        BitSet segmentDocs = new BitSet();
+        HashMap<String,CompressedPostings> postings = new HashMap<String,CompressedPostings>();
+        for (Map.Entry<String,DocumentList> entry : index.entrySet()) {
+            CompressedPostings list = new CompressedPostings();
+            for (DocumentInfo dInfo : entry.getValue()) {
+                if (!docs.contains(dInfo.GetDocumentId())) continue;
+                list.add(dInfo.GetDocumentId(), dInfo.GetOccurences());
+                segmentDocs.set(dInfo.GetDocumentId());
+            }
+            if (list.getDocFrequency() > 0) postings.put(entry.getKey(), list);
+        }
+
+        buffer = new HashMap<String,DocumentList>();
+        bufferDocs = new BitSet();
+        segments = new ArrayList<Segment>();
+        if (!segmentDocs.isEmpty()) segments.add(new Segment(nextSegment++, postings, segmentDocs, docsStats));
+        weights.clear();
+    }
+
+    /**
+     * <p>
+     * Replaces the documents and the segments with the ones that have been read<br />
+     * from the files of the segments (see <code>SegmentFile</code>) and starts the<br />
+     * merges that are needed.
+     * </p>
+     *
+     * @param docs the dictionary with the documents
+     * @param docsStats the statistics of the documents
+     * @param segments the segments
+     * @param nextSegment the number of the next new segment
+     */
+    synchronized void setSegments(DocumentDictionary docs, DocumentStatistics docsStats,
+            ArrayList<Segment> segments, long nextSegment) {
+        this.docs = docs;
+        this.docsStats = docsStats;
+        this.buffer = new HashMap<String,DocumentList>();
+        this.bufferDocs = new BitSet();
+        this.segments = segments;
+        this.nextSegment = nextSegment;
+        weights.clear();
+        this.mergeTiers();
+    }
+
+    /**
+     * <p>
+     * Reads all the segments and the buffer to an <code>Index</code> with the same<br />
+     * document IDs. The weights are not computed.
+     * </p>
+     *
+     * @return the index structure
+     */
+    public synchronized Index toIndex() {
+        Index index = new Index(name);
+        DocumentDictionary indexDocs = index.getDocumentDictionary();
+        DocumentStatistics indexStats = index.getDocumentStatistics();
+        for (int id = 0; id < docs.capacity(); id++) {
+            indexDocs.add(docs.getName(id));
+            if (docs.contains(id))
+                indexStats.copy(docsStats, id, id);
+            else
+                indexDocs.remove(id);
+        }
+
+        HashSet<String> words = new HashSet<String>(buffer.keySet());
+        ArrayList<BitSet> deleted = new ArrayList<BitSet>();
+        for (Segment segment : segments) {
+            words.addAll(segment.getWords());
+            deleted.add(segment.getDeleted());
+        }
+        for (String word : words) {
+            DocumentList list = new DocumentList();
+            PostingIterator iterator = this.getPostings(word, 0, deleted, false);
+            while (iterator.nextDoc() != PostingIterator.NO_MORE_DOCS)
+                list.add(iterator.docId(), iterator.occurrences());
+            if (list.size() > 0) index.put(word, list);
+        }
+        index.invalidateWeights();
+
+        return index;
+    }
+
+    /**
+     * <p>Stops the background thread after the running merges.</p>
+     */
+    public void close() {
+        merger.shutdown();
+    }
+
+    /**
+     *
+     * @return the number of flushed segments
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     *
+     * @return the flushed segments, in a new list
+     */
+    synchronized ArrayList<Segment> getSegments() {
+        return new ArrayList<Segment>(segments);
+    }
+
+    /**
+     *
+     * @return the number of the next new segment
+     */
+    synchronized long getNextSegment() {
+        return nextSegment;
+    }
+
+    /**
+     *
+     * @return the dictionary with the documents
+     */
+    synchronized DocumentDictionary getDocumentDictionary() {
+        return docs;
+    }
+
+    /**
+     *
+     * @return the statistics of the documents
+     */
+    synchronized DocumentStatistics getDocumentStatistics() {
+        return docsStats;
+    }
+
+    /**
+     *
+     * @return the number of buffered documents
+     */
+    public synchronized int getBufferedDocCount() {
+        return bufferDocs.cardinality();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getDocCount() {
+        return docs.size();
+    }
+
+    public synchronized int getMaxDocId() {
+        return docs.capacity();
+    }
+
+    public synchronized boolean containsDoc(int docId) {
+        return docs.contains(docId);
+    }
+
+    public synchronized String getDocName(int docId) {
+        return docs.getName(docId);
+    }
+
+    public synchronized int getDocId(String docName) {
+        return docs.getId(docName);
+    }
+
+    public synchronized ArrayList<String> getDocNames() {
+        return docs.getNames();
+    }
+
+    public synchronized int getDocFrequency(String word) {
+        DocumentList list = buffer.get(word);
+        int docFrequency = list == null ? 0 : list.size();
+        for (Segment segment : segments)
+            docFrequency += segment.getDocFrequency(word, docsStats);
+        return docFrequency;
+    }
+
+    /**
+     * <p>
+     * The words of the segments are found in their dictionaries. The words of<br />
+     * the deleted documents only are left out.
+     * </p>
+     */
+    public synchronized ArrayList<String> getWords(String prefix) {
+        TreeSet<String> words = new TreeSet<String>();
+        for (String word : buffer.keySet())
+            if (word.startsWith(prefix)) words.add(word);
+        for (Segment segment : segments)
+            words.addAll(segment.getWords(prefix));
+
+        ArrayList<String> live = new ArrayList<String>();
+        for (String word : words)
+            if (this.getDocFrequency(word) > 0) live.add(word);
+        return live;
+    }
+
+    /**
+     * <p>
+     * The iterator reads the word's lists of all the segments and the buffer,<br />
+     * without the deleted documents, as one list in ID order.
+     * </p>
+     */
+    public synchronized PostingIterator getPostings(String word) {
+        int docFrequency = this.getDocFrequency(word);
+        if (docFrequency == 0) return null;
+
+        ArrayList<BitSet> deleted = new ArrayList<BitSet>();
+        for (Segment segment : segments)
+            deleted.add(segment.getDeleted());
+        return this.getPostings(word, docFrequency, deleted, true);
+    }
+
+    /**
+     *
+     * @param word the word
+     * @param docFrequency the number of live documents that contain the word
+     * @param segmentsDeleted the deleted documents of every segment
+     * @param copyBuffer shows if the buffer's list is copied, because the buffer may change
+     * @return an iterator over the word's lists of all the segments and the buffer
+     */
+    private PostingIterator getPostings(String word, int docFrequency, ArrayList<BitSet> segmentsDeleted,
+            boolean copyBuffer) {
+        ArrayList<PostingIterator> iterators = new ArrayList<PostingIterator>();
+        ArrayList<BitSet> deleted = new ArrayList<BitSet>();
+
+        DocumentList list = buffer.get(word);
+        if (list != null) {
+            if (copyBuffer) {
+                CompressedPostings copy = new CompressedPostings();
+                for (DocumentInfo dInfo : list)
+                    copy.add(dInfo.GetDocumentId(), dInfo.GetOccurences());
+                copy.trim(docsStats);
+                iterators.add(copy.iterator(docsStats, docs.size()));
+            } else
+                iterators.add(list.postings());
+            deleted.add(new BitSet());
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            PostingIterator iterator = segments.get(i).getPostings(word, docsStats, docs.size());
+            if (iterator == null) continue;
+            iterators.add(iterator);
+            deleted.add(segmentsDeleted.get(i));
+        }
+
+        return new MergedIterator(iterators, deleted, docFrequency, docsStats, docs.size());
+    }
+
+    public synchronized double getWeight(String word, int docId) {
+        return weights.getWeight(word, docId);
+    }
+
+    /**
+     * <p>
+     * Reads many posting lists as one list in ID order. The lists must not have<br />
+     * the same document, unless it is deleted in all of them but one.
+     * </p>
+     */
+    private static class MergedIterator implements PostingIterator {
+        private PostingIterator[] iterators;    // the lists' iterators
+        private BitSet[] deleted;               // the deleted documents of every list
+        private int docFrequency;               // the number of live documents of the lists
+        private DocumentStatistics stats;       // the statistics of the documents
+        private int docCount;                   // the number of documents in the index
+        private int current;                    // the iterator of the current document or -1
+        private int docId;                      // the current document's ID
+
+        MergedIterator(ArrayList<PostingIterator> iterators, ArrayList<BitSet> deleted, int docFrequency,
+                DocumentStatistics stats, int docCount) {
+            this.iterators = iterators.toArray(new PostingIterator[iterators.size()]);
+            this.deleted = deleted.toArray(new BitSet[deleted.size()]);
+            this.docFrequency = docFrequency;
+            this.stats = stats;
+            this.docCount = docCount;
+            this.current = -1;
+            this.docId = -1;
+            for (int i = 0; i < this.iterators.length; i++)
+                this.next(i);
+        }
+
+        /**
+         * <p>Moves an iterator to its next live document.</p>
+         */
+        private void next(int i) {
+            int next;
+            do {
+                next = iterators[i].nextDoc();
+            } while (next != NO_MORE_DOCS && deleted[i].get(next));
+        }
+
+        public int nextDoc() {
+            if (current >= 0) this.next(current);
+
+            return this.select();
+        }
+
+        /**
+         * <p>Every list jumps to its first live document that is not before the target.</p>
+         */
+        public int advance(int target) {
+            if (docId >= target) return docId;
+
+            for (int i = 0; i < iterators.length; i++) {
+                if (iterators[i].docId() >= target) continue;
+                if (iterators[i].advance(target) != NO_MORE_DOCS && deleted[i].get(iterators[i].docId()))
+                    this.next(i);
+            }
+            return this.select();
+        }
+
+        /**
+         * <p>Makes the list with the smallest document the current list.</p>
+         *
+         * @return the current document's ID
+         */
+        private int select() {
+            current = -1;
+            for (int i = 0; i < iterators.length; i++)
+                if (iterators[i].docId() != NO_MORE_DOCS
+                        && (current < 0 || iterators[i].docId() < iterators[current].docId()))
+                    current = i;
+
+            return docId = (current < 0) ? NO_MORE_DOCS : iterators[current].docId();
+        }
+
+        public int docId() {
+            return docId;
+        }
+
+        public int occurrences() {
+            return iterators[current].occurrences();
+        }
+
+        public double weight() {
+            return Index.weight(this.occurrences(), stats.getMaxFrequency(docId), docFrequency, docCount);
+        }
+
+        /**
+         * <p>
+         * The max weight of every list is computed with the number of live documents<br />
+         * of all the lists. A list without a known max weight is bounded by a<br />
+         * normalized frequency of 1.
+         * </p>
+         */
+        public double maxWeight() {
+            double max = 0;
+            for (PostingIterator iterator : iterators) {
+                double weight = (iterator instanceof EncodedPostingIterator)
+                        ? ((EncodedPostingIterator) iterator).maxWeight(docFrequency, docCount)
+                        : Index.weight(1, 1, docFrequency, docCount);
+                max = Math.max(max, weight);
+            }
+            return max;
+        }
+
+        /**
+         * <p>The block of the merged lists ends with the first end of their blocks.</p>
+         */
+        public int advanceBlock(int target) {
+            int end = NO_MORE_DOCS;
+            for (PostingIterator iterator : iterators)
+                end = Math.min(end, iterator.advanceBlock(target));
+            return end;
+        }
+
+        public double blockMaxWeight() {
+            double max = 0;
+            for (PostingIterator iterator : iterators) {
+                double weight = (iterator instanceof EncodedPostingIterator)
+                        ? ((EncodedPostingIterator) iterator).blockMaxWeight(docFrequency, docCount)
+                        : Index.weight(1, 1, docFrequency, docCount);
+                max = Math.max(max, weight);
+            }
+            return max;
+        }
+
+        public int documentFrequency() {
+            return docFrequency;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ixm;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>
+ * This class is a sorted dictionary of words in one byte array. The words are<br />
+ * kept in blocks of <code>BLOCK_SIZE</code> words. The first word of a block is kept<br />
+ * whole and every other word keeps only the bytes that follow its common prefix<br />
+ * with the previous word (front coding), like the dictionary of an <code>IndexFile</code>.<br />
+ * <br />
+ * A word is found by binary search over the first words of the blocks and a<br />
+ * scan of one block. The words are in order, so the words with a prefix or in<br />
+ * a range are found without a scan of the whole dictionary. A word is known by<br />
+ * its number in the order. The dictionary cannot be changed and its fields are<br />
+ * final, so it can be read by many threads once it has been built.
+ * </p>
+ *
+ * @see CompactIndex
+ * @see IndexReader
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class TermDictionary {
+    public static final int BLOCK_SIZE = 16;    // the number of words in a block
+    public static final Comparator<String> ORDER = new Order(); // the order of the words, as UTF-8 bytes
+
+    private final byte[] data;  // the front coded words
+    private final int[] blocks; // the position of every block in the data
+    private final int size;     // the number of words
+
+    /**
+     *
+     * @param words the words, sorted in <code>ORDER</code> and without duplicates
+     */
+    public TermDictionary(String[] words) {
+        this.size = words.length;
+        this.blocks = new int[(size + BLOCK_SIZE - 1) / BLOCK_SIZE];
+        byte[] data = new byte[Math.max(16, size * 8)];
+
+        int position = 0;
+        byte[] previous = new byte[0];
+        for (int i = 0; i < size; i++) {
+            byte[] term = words[i].getBytes(IndexFile.UTF8);
+            int shared = 0;
+            if (i % BLOCK_SIZE == 0)
+                blocks[i / BLOCK_SIZE] = position;
+            else
+                while (shared < previous.length && shared < term.length && previous[shared] == term[shared])
+                    shared++;
+
+            if (data.length < position + 10 + term.length - shared)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, position + 10 + term.length));
+            position = VariableByte.writeInt(data, position, shared);
+            position = VariableByte.writeInt(data, position, term.length - shared);
+            System.arraycopy(term, shared, data, position, term.length - shared);
+            position += term.length - shared;
+            previous = term;
+        }
+        this.data = Arrays.copyOf(data, position);
+    }
+
+    /**
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return the number of bytes of the front coded words
+     */
+    public long getSizeInBytes() {
+        return data.length + blocks.length * 4L;
+    }
+
+    /**
+     *
+     * @param word the word
+     * @return the word's number in the order or -1 if the word is not in the dictionary
+     */
+    public int find(String word) {
+        byte[] target = word.getBytes(IndexFile.UTF8);
+        Cursor cursor = this.seek(target);
+
+        return cursor.ordinal < size && cursor.compareTo(target) == 0 ? cursor.ordinal : -1;
+    }
+
+    /**
+     *
+     * @param ordinal the word's number in the order
+     * @return the word
+     */
+    public String get(int ordinal) {
+        if (ordinal < 0 || ordinal >= size)
+            throw new IndexOutOfBoundsException("No word with number " + ordinal);
+
+        Cursor cursor = new Cursor(ordinal / BLOCK_SIZE);
+        while (cursor.ordinal < ordinal) cursor.next();
+        return cursor.toString();
+    }
+
+    /**
+     *
+     * @param prefix the prefix
+     * @return the words that start with the prefix, in order
+     */
+    public ArrayList<String> prefix(String prefix) {
+        byte[] target = prefix.getBytes(IndexFile.UTF8);
+        ArrayList<String> words = new ArrayList<String>();
+
+        for (Cursor cursor = this.seek(target); cursor.ordinal < size && cursor.startsWith(target); cursor.next())
+            words.add(cursor.toString());
+        return words;
+    }
+
+    /**
+     *
+     * @param from the first word of the range
+     * @param to the word after the range or null for the end of the dictionary
+     * @return the words that are not before <code>from</code> and are before <code>to</code>, in order
+     */
+    public ArrayList<String> range(String from, String to) {
+        byte[] end = to == null ? null : to.getBytes(IndexFile.UTF8);
+        ArrayList<String> words = new ArrayList<String>();
+
+        for (Cursor cursor = this.seek(from.getBytes(IndexFile.UTF8));
+                cursor.ordinal < size && (end == null || cursor.compareTo(end) < 0); cursor.next())
+            words.add(cursor.toString());
+        return words;
+    }
+
+    /**
+     * <p>
+     * Finds the first word that is not before a target. It finds the last block<br />
+     * whose first word is not after the target by binary search and then it scans<br />
+     * the block.
+     * </p>
+     *
+     * @param target the target's bytes
+     * @return a cursor on the word, or after the last word
+     */
+    private Cursor seek(byte[] target) {
+        int low = 0, high = blocks.length - 1, block = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (new Cursor(mid).compareTo(target) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else
+                high = mid - 1;
+        }
+
+        Cursor cursor = new Cursor(block);
+        while (cursor.ordinal < size && cursor.compareTo(target) < 0)
+            cursor.next();
+        return cursor;
+    }
+
+    /**
+     * <p>
+     * Compares two words by their code points, which is the order of their UTF-8<br />
+     * bytes, so that words in this order can be put to a dictionary.
+     * </p>
+     */
+    private static class Order implements Comparator<String>, Serializable {
+
+        public int compare(String a, String b) {
+            int i = 0, j = 0;
+            while (i < a.length() && j < b.length()) {
+                int ca = a.codePointAt(i), cb = b.codePointAt(j);
+                if (ca != cb) return ca - cb;
+                i += Character.charCount(ca);
+                j += Character.charCount(cb);
+            }
+            return (a.length() - i) - (b.length() - j);
+        }
+    }
+
+    /**
+     * <p>Decodes the words in order, from the first word of a block.</p>
+     */
+    private class Cursor {
+        private ByteBuffer in;              // the data after the current word
+        private byte[] term = new byte[32]; // the current word's bytes
+        private int length;                 // the current word's length
+        private int ordinal;                // the current word's number
+
+        /**
+         *
+         * @param block the block's number
+         */
+        Cursor(int block) {
+            in = ByteBuffer.wrap(data);
+            ordinal = block * BLOCK_SIZE - 1;
+            if (block < blocks.length) {
+                in.position(blocks[block]);
+                this.next();
+            } else
+                ordinal = size;
+        }
+
+        /**
+         * <p>Moves to the next word.</p>
+         */
+        void next() {
+            if (++ordinal >= size) return;
+
+            int shared = VariableByte.readInt(in);
+            int suffix = VariableByte.readInt(in);
+            if (term.length < shared + suffix) term = Arrays.copyOf(term, (shared + suffix) * 2);
+            in.get(term, shared, suffix);
+            length = shared + suffix;
+        }
+
+        /**
+         * <p>The words are compared as UTF-8 bytes.</p>
+         *
+         * @param target the other word's bytes
+         * @return a negative number, zero or a positive number
+         */
+        int compareTo(byte[] target) {
+            int n = Math.min(length, target.length);
+            for (int i = 0; i < n; i++) {
+                int cmp = (term[i] & 0xFF) - (target[i] & 0xFF);
+                if (cmp != 0) return cmp;
+            }
+            return length - target.length;
+        }
+
+        /**
+         *
+         * @param prefix the prefix's bytes
+         * @return a value that shows if the current word starts with the prefix
+         */
+        boolean startsWith(byte[] prefix) {
+            if (length < prefix.length) return false;
+            for (int i = 0; i < prefix.length; i++)
+                if (term[i] != prefix[i]) return false;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return new String(term, 0, length, IndexFile.UTF8);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package ixm;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>
+ * This class splits a document into words and puts them straight to an<br />
+ * <code>Index</code>. It reads the document through a reusable char buffer and<br />
+ * looks at every character once, so it doesn't build any strings but the words.<br />
+ * <br />
+ * A word is a sequence of the characters <code>[A-Za-z0-9]</code>. The characters<br />
+ * <code>','</code> and <code>'.'</code> are dropped and any other character ends the word.<br />
+ * If the last space-separated word of a line is a hyphenated word (letters and<br />
+ * hyphens that end with a hyphen), it is joined without its last hyphen to the<br />
+ * beginning of the next line, just like the words of a book.
+ * </p>
+ *
+ * @see IndexHandle
+ * @see Index
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class Tokenizer {
+    private char[] buffer;          // the buffer that the document is read into
+    private char[] word;            // the characters of the current word
+    private int wordLength;         // the length of the current word
+    private char[] lastWord;        // the hyphenated last word of the previous line
+    private int lastWordLength;     // the length of the last word of the previous line
+    private char[] segment;         // the characters after the last space of the line
+    private int segmentLength;      // the length of the segment
+    private boolean segmentValid;   // shows if the segment has only letters and hyphens
+    private boolean lineStarted;    // shows if a character of the line has been found
+    private boolean lineRead;       // shows if the line has any character, even a blank
+    private boolean pendingSpace;   // shows if there is a space before the next character
+    private boolean pendingBlank;   // shows if there is a blank but not a space after the last space
+    private boolean lastWasReturn;  // shows if the previous character was a '\r'
+
+    private Index index;            // the index that the words are put
+    private String docName;         // the document's name
+    private int docId;              // the document's ID or -1 before its first word
+    private int count;              // the number of the words that have been put
+
+    /**
+     * <p>Initializes the buffers.</p>
+     */
+    public Tokenizer() {
+        buffer = new char[8192];
+        word = new char[32];
+        lastWord = new char[32];
+        segment = new char[32];
+    }
+
+    /**
+     * <p>
+     * Reads a document and puts its words to the index. The document is added<br />
+     * to the index's <code>DocumentDictionary</code> with its first word, so a<br />
+     * document without words is not added.
+     * </p>
+     *
+     * @param reader the document's reader
+     * @param index the index
+     * @param docName the document's name
+     * @return the number of words that have been put
+     * @throws IOException if the reader fails
+     */
+    public int tokenize(Reader reader, Index index, String docName) throws IOException {
+        this.index = index;
+        this.docName = docName;
+        this.docId = -1;
+        this.count = 0;
+        lastWordLength = 0;
+        lastWasReturn = false;
+        startLine();
+
+        int n;
+        while ((n = reader.read(buffer, 0, buffer.length)) >= 0) {
+            for (int i = 0; i < n; i++) {
+                char c = buffer[i];
+
+                if (c == '\n' || c == '\r') {
+                    if (c == '\n' && lastWasReturn) {
+                        lastWasReturn = false;
+                        continue;
+                    }
+                    lastWasReturn = (c == '\r');
+                    endLine();
+                    startLine();
+                    continue;
+                }
+                lastWasReturn = false;
+                lineRead = true;
+
+                if (c <= ' ') {
+                    // the blanks are trimmed at the ends of the line
+                    if (!lineStarted) continue;
+                    endWord();
+                    if (c == ' ') {
+                        pendingSpace = true;
+                        pendingBlank = false;
+                    } else
+                        pendingBlank = true;
+                    continue;
+                }
+
+                if (!lineStarted) {
+                    lineStarted = true;
+                    // the last word of the previous line starts this line
+                    for (int j = 0; j < lastWordLength; j++)
+                        append(lastWord[j]);
+                }
+                if (pendingSpace) {
+                    segmentLength = 0;
+                    segmentValid = true;
+                }
+                if (pendingBlank) segmentValid = false;
+                pendingSpace = false;
+                pendingBlank = false;
+
+                append(c);
+            }
+        }
+        if (lineRead) endLine();
+
+        this.index = null;
+        return count;
+    }
+
+    /**
+     * <p>Resets the state of a line.</p>
+     */
+    private void startLine() {
+        wordLength = 0;
+        segmentLength = 0;
+        segmentValid = true;
+        lineStarted = false;
+        lineRead = false;
+        pendingSpace = false;
+        pendingBlank = false;
+    }
+
+    /**
+     * <p>
+     * Ends the line's last word and keeps the line's last space-separated word<br />
+     * if it is hyphenated.
+     * </p>
+     */
+    private void endLine() {
+        if (!lineStarted) {
+            // an empty line still carries the last word of the previous line
+            for (int j = 0; j < lastWordLength; j++)
+                append(lastWord[j]);
+        }
+        endWord();
+
+        if (segmentValid && segmentLength >= 2 && segment[segmentLength - 1] == '-') {
+            lastWordLength = segmentLength - 1;
+            if (lastWord.length < lastWordLength)
+                lastWord = new char[segment.length];
+            System.arraycopy(segment, 0, lastWord, 0, lastWordLength);
+        } else
+            lastWordLength = 0;
+    }
+
+    /**
+     * <p>Adds a character of the line to the current word and the segment.</p>
+     *
+     * @param c the character
+     */
+    private void append(char c) {
+        boolean letter = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+
+        if (segmentValid) {
+            if (letter || c == '-') {
+                if (segmentLength == segment.length)
+                    segment = grow(segment);
+                segment[segmentLength++] = c;
+            } else
+                segmentValid = false;
+        }
+
+        if (letter || (c >= '0' && c <= '9')) {
+            if (wordLength == word.length)
+                word = grow(word);
+            word[wordLength++] = c;
+        } else if (c != ',' && c != '.') {
+            endWord();
+        }
+    }
+
+    /**
+     * <p>Puts the current word to the index, if there is one.</p>
+     */
+    private void endWord() {
+        if (wordLength == 0) return;
+
+        if (docId < 0)
+            docId = index.getDocumentDictionary().add(docName);
+        index.put(new String(word, 0, wordLength), docId);
+        wordLength = 0;
+        count++;
+    }
+
+    /**
+     *
+     * @param array a full array
+     * @return a new array with double size and the same characters
+     */
+    private static char[] grow(char[] array) {
+        char[] newArray = new char[array.length * 2];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+}
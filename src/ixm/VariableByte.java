@@ -0,0 +1,96 @@
+package ixm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * This class encodes and decodes the numbers of the index files in the variable-byte<br />
+ * format. A number is written seven bits at a time, from the lowest bits to the<br />
+ * highest, and every byte but the last has its high bit set. Small numbers, like<br />
+ * the gaps between the document IDs of a posting list, take a single byte.
+ * </p>
+ *
+ * @see IndexFile
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+public class VariableByte {
+
+    /**
+     * <p>Writes a non negative <code>int</code>.</p>
+     *
+     * @param buffer the buffer
+     * @param value the number
+     */
+    public static void writeInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * <p>Writes a non negative <code>long</code>.</p>
+     *
+     * @param buffer the buffer
+     * @param value the number
+     */
+    public static void writeLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * <p>Writes a non negative <code>int</code> to an array, which must have space for 5 bytes.</p>
+     *
+     * @param bytes the array
+     * @param position the position in the array
+     * @param value the number
+     * @return the position after the number
+     */
+    public static int writeInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     *
+     * @param buffer the buffer
+     * @return the <code>int</code> that starts at the buffer's position
+     */
+    public static int readInt(ByteBuffer buffer) {
+        byte b = buffer.get();
+        int value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+        }
+        return value;
+    }
+
+    /**
+     *
+     * @param buffer the buffer
+     * @return the <code>long</code> that starts at the buffer's position
+     */
+    public static long readLong(ByteBuffer buffer) {
+        byte b = buffer.get();
+        long value = b & 0x7F;
+        for (int shift = 7; b < 0; shift += 7) {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+        }
+        return value;
+    }
+}
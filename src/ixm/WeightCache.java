@@ -0,0 +1,85 @@
+package ixm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * This class finds the weights of the words in the documents of an index whose<br />
+ * posting lists are encoded, so they can only be read in order. The lists of the<br />
+ * last words are decoded to arrays and kept, so that the weights of many<br />
+ * documents can be found by binary search.
+ * </p>
+ *
+ * @see MappedIndex
+ * @see CompactIndex
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ *
+ * @version 1.0
+ */
+class WeightCache {
+    private IndexReader reader;                         // the index
+    private LinkedHashMap<String,DecodedList> decoded;  // the decoded lists, the last used at the end
+
+    /**
+     *
+     * @param reader the index
+     * @param size the number of decoded lists that are kept
+     */
+    WeightCache(IndexReader reader, final int size) {
+        this.reader = reader;
+        this.decoded = new LinkedHashMap<String,DecodedList>(size, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,DecodedList> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     *
+     * @param word the word
+     * @param docId the document's ID
+     * @return the weight of the word in the document, or 0 if the document doesn't contain the word
+     */
+    synchronized double getWeight(String word, int docId) {
+        DecodedList list = decoded.get(word);
+        if (list == null) {
+            PostingIterator iterator = reader.getPostings(word);
+            if (iterator == null) return 0;
+
+            list = new DecodedList(iterator);
+            decoded.put(word, list);
+        }
+
+        int pos = Arrays.binarySearch(list.docIds, docId);
+        return pos < 0 ? 0 : list.weights[pos];
+    }
+
+    /**
+     * <p>Drops the decoded lists.</p>
+     */
+    synchronized void clear() {
+        decoded.clear();
+    }
+
+    /**
+     * <p>A posting list that has been decoded to arrays.</p>
+     */
+    private static class DecodedList {
+        int[] docIds;       // the documents' IDs
+        double[] weights;   // the weights of the word in the documents
+
+        DecodedList(PostingIterator iterator) {
+            docIds = new int[iterator.documentFrequency()];
+            weights = new double[docIds.length];
+            for (int i = 0; iterator.nextDoc() != PostingIterator.NO_MORE_DOCS; i++) {
+                docIds[i] = iterator.docId();
+                weights[i] = iterator.weight();
+            }
+        }
+    }
+}
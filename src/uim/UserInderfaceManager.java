@@ -4,6 +4,7 @@ import bm.BooleanModelManager;
 import java.io.*;
 import javax.swing.event.ListSelectionEvent;
 import vm.VectorModelManager;
+import ixm.DocumentStore;
 import ixm.IndexHandle;
 import ixm.IndexManager;
 import ixm.Parser;
@@ -12,6 +13,8 @@ import java.awt.event.*;
 import java.net.URL;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.ListSelectionListener;
@@ -78,6 +81,7 @@ public class UserInderfaceManager extends JFrame {
     private JTabbedPane desktopPane;            // the preview panel
     private IndexManager iManager;              // manages the indexes
     private IndexHandle iHandler;               // handles the current index
+    private DocumentStore dStore;               // the documents of the current index's collection or null if they are in files
     private BooleanModelManager bManager;       // manages the results when the Boolean Model is turned on
     private VectorModelManager vManager;        // manages the results when the Vector Model is turned on
     private Metrics metrics;                    // computes the metrics
@@ -209,13 +213,12 @@ public class UserInderfaceManager extends JFrame {
                 if (fc.showDialog(rootPane,"Select") == JFileChooser.APPROVE_OPTION) {
                     File file = fc.getSelectedFile();
                     if (file.getName().endsWith("_docs.txt")) {
-                        Parser.ParsFile(file.getPath());
                         String indexName = file.getParent();
                         indexName = indexName.split("\\\\")[indexName.split("\\\\").length-1];
 
                         updateStatus("Creating " + indexName + "'s Index...");
                         long startTime = System.nanoTime();
-                        if (iManager.CreateIndex(indexName)) {
+                        if (iManager.CreateIndex(indexName, file.getPath(), false, true)) {
                             long endTime = System.nanoTime();
                             double elapsedTime = (double) (endTime - startTime)/1000000000.0;
                             updateStatus(indexName + "'s Index has been created. Elapsed time: " + df.format(elapsedTime) + " sec.");
@@ -287,7 +290,7 @@ public class UserInderfaceManager extends JFrame {
                         indexName = indexName.split("\\.")[0];
                         updateStatus("Openning " + indexName + " Index...");
                         if (iHandler != null) iManager.CloseIndex(iHandler);
-                        if ((iHandler = iManager.OpenIndex(indexName)) != null) {
+                        if ((iHandler = iManager.OpenMappedIndex(indexName)) != null) {
                             setOpened(true);
                             updateStatus("Succeed to open Index " + indexName + ".");
                         }else updateStatus("Could not open Index " + indexName + ".");
@@ -313,10 +316,25 @@ public class UserInderfaceManager extends JFrame {
                         public void actionPerformed(ActionEvent e) {
                             if (iHandler != null || !iHandler.isOpen()) {
                                 updateStatus("Saving " + iHandler.getIndexName() + "'s Index...");
-                                if (iManager.SaveIndex(iHandler)) {
-                                    updateStatus("Index saved.");
-                                } else
-                                    updateStatus("Index could not be saved. An unknown error has occured.");
+                                // the index is written in the background and it can be used meanwhile
+                                final Future<Boolean> saving = iManager.SaveIndexInBackground(iHandler);
+                                new SwingWorker<Boolean,Void>() {
+                                    @Override
+                                    protected Boolean doInBackground() throws Exception {
+                                        return saving.get();
+                                    }
+
+                                    @Override
+                                    protected void done() {
+                                        try {
+                                            if (get()) {
+                                                updateStatus("Index saved.");
+                                                return;
+                                            }
+                                        } catch (Exception ex) {}
+                                        updateStatus("Index could not be saved. An unknown error has occured.");
+                                    }
+                                }.execute();
                             } else updateStatus("There is no opened Index to save.");
                         }
                     });
@@ -422,6 +440,17 @@ public class UserInderfaceManager extends JFrame {
         item.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_R, mask));
         item.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
+                if (dStore != null && !new File("Collections\\" + iHandler.getIndexName() + "\\DOCS").isDirectory()) {
+                    removeStoredDocuments();
+                    return;
+                }
+                final ArrayList<String> docNames;
+                iHandler.BeginRead();
+                try {
+                    docNames = iHandler.getReader().getDocNames();
+                } finally {
+                    iHandler.EndRead();
+                }
                 JFileChooser fc = new JFileChooser();
                 fc.setDialogTitle("Select File(s) to Remove");
                 fc.setCurrentDirectory(new File("Collections\\" + iHandler.getIndexName() + "\\DOCS"));
@@ -430,7 +459,7 @@ public class UserInderfaceManager extends JFrame {
                     @Override
                     public boolean accept(File f) {
                         boolean accepted = false;
-                        for (String fileName : iHandler.getIndex().getDocNames())
+                        for (String fileName : docNames)
                             accepted = accepted || f.getName().equals(fileName);
 
                         return accepted || f.isDirectory();
@@ -472,6 +501,48 @@ public class UserInderfaceManager extends JFrame {
         return (this.removeFile = item);
     }
 
+    /**
+     * <p>
+     * Shows the documents of the index in a list and removes the selected ones.<br />
+     * It is used when the documents are in a <code>DocumentStore</code>, so there are<br />
+     * no files to select.
+     * </p>
+     */
+    protected void removeStoredDocuments() {
+        String[] docNames;
+        iHandler.BeginRead();
+        try {
+            docNames = iHandler.getReader().getDocNames().toArray(new String[0]);
+        } finally {
+            iHandler.EndRead();
+        }
+        JList<String> list = new JList<String>(docNames);
+        list.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        JScrollPane pane = new JScrollPane(list);
+        pane.setPreferredSize(new Dimension(250, 300));
+
+        if (JOptionPane.showConfirmDialog(rootPane, pane, "Select File(s) to Remove",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION
+                || list.getSelectedIndex() < 0) {
+            updateStatus("Process canceled.");
+            return;
+        }
+
+        List<String> names = list.getSelectedValuesList();
+        int count = 0;
+        for (String name : names) {
+            updateStatus("Removing " + name + " ...");
+            if (!iHandler.DeleteDocument(name)) {
+                count++;
+                updateStatus("Could not remove file. An unknown error has occured.");
+            }
+        }
+        if (names.size() > count) {
+            if (names.size() == 1) updateStatus("Succeed to remove " + names.get(0) + ".");
+            else updateStatus("Succeed to remove " + (names.size() - count) + " files.");
+        }
+    }
+
     /**
      * <p>Creates the "Save and Exit" menu item for the "Index" menu.</p>
      *
@@ -918,9 +989,14 @@ public class UserInderfaceManager extends JFrame {
                     }
                     BufferedReader reader = null;
                     try {
-                        path += result;
-                        File file = new File(path);
-                        reader = new BufferedReader(new FileReader(file));
+                        String stored = (dStore != null) ? dStore.getDocument(result) : null;
+                        if (stored != null)
+                            reader = new BufferedReader(new StringReader(stored));
+                        else {
+                            path += result;
+                            File file = new File(path);
+                            reader = new BufferedReader(new FileReader(file));
+                        }
                         JPanel tab = new JPanel(new BorderLayout());
                         JTextArea text = new JTextArea() {
 
@@ -1073,6 +1149,14 @@ public class UserInderfaceManager extends JFrame {
         removeFile.setEnabled(b);
         isOpen = b;
 
+        if (dStore != null) {
+            try {
+                dStore.close();
+            } catch (IOException ex) {}
+            dStore = null;
+        }
+        if (b && iHandler != null)
+            dStore = iManager.OpenDocumentStore(iHandler.getIndexName());
         if (!b) {
             resultsPane.removeAll();
             desktopPane.removeAll();
@@ -0,0 +1,77 @@
+package vm;
+
+import ixm.PostingIterator;
+
+/**
+ * Walks the documents of an inner product query document at a time and<br/>
+ * skips the documents that cannot pass a threshold (Block-Max WAND).<br/>
+ * The pivot is found with the max weights of the whole lists, like in the<br/>
+ * <code>WandEvaluator</code>. Then the lists up to the pivot move to the blocks of<br/>
+ * the pivot's document, without decoding their postings. If the max weights<br/>
+ * of these blocks cannot pass the threshold, no document up to the first end<br/>
+ * of the blocks can pass it, so the lists jump over all these documents.<br/>
+ * The cosine is not bounded by the weights of the documents, so it is ranked<br/>
+ * by the <code>WandEvaluator</code>.
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ */
+public class BlockMaxWandEvaluator extends WandEvaluator {
+
+    /**
+     * Opens the posting lists of the query's terms.
+     * @param query The compiled query.
+     * @param threshold The score that a document must reach to be scored.
+     */
+    public BlockMaxWandEvaluator(QueryVector query, double threshold) {
+        super(query, false, threshold);
+    }
+
+    /**
+     * Moves to the next document that may reach the threshold.
+     * @return The document's ID or <code>PostingIterator.NO_MORE_DOCS</code>.
+     */
+    @Override
+    public int nextDoc() {
+        if (docId == PostingIterator.NO_MORE_DOCS) return docId;
+        this.moveLists();
+
+        while (true) {
+            this.sortLists();
+
+            int pivot = this.findPivot();
+            if (pivot < 0) return docId = PostingIterator.NO_MORE_DOCS;
+
+            // the lists after the pivot that are at the pivot's document are also in its bound
+            int pivotDoc = postings[order[pivot]].docId();
+            int last = pivot;
+            while (last + 1 < order.length && postings[order[last + 1]].docId() == pivotDoc)
+                last++;
+
+            double sum = 0;
+            int end = PostingIterator.NO_MORE_DOCS;
+            for (int j = 0; j <= last; j++) {
+                int i = order[j];
+                end = Math.min(end, postings[i].advanceBlock(pivotDoc));
+                sum += query.getCount(i)*query.getWeight(i)*postings[i].blockMaxWeight();
+            }
+
+            if (this.reaches(sum)) {
+                if (postings[order[0]].docId() == pivotDoc) return docId = pivotDoc;
+
+                // the documents before the pivot cannot reach the threshold
+                for (int j = 0; j < pivot; j++)
+                    postings[order[j]].advance(pivotDoc);
+                continue;
+            }
+
+            // the documents up to the end of the blocks cannot reach the threshold,
+            // nor the documents before the next list's document
+            int target = (end == PostingIterator.NO_MORE_DOCS) ? end : end + 1;
+            if (last + 1 < order.length)
+                target = Math.min(target, postings[order[last + 1]].docId());
+            for (int j = 0; j <= last; j++)
+                postings[order[j]].advance(target);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package vm;
+
+import ixm.IndexReader;
+import ixm.PostingIterator;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+/**
+ * Instances of this class hold a query that has been compiled once.<br/>
+ * The repeated terms of the query are kept once with their number of<br/>
+ * repeats, in the order that they first appear, and the terms that are<br/>
+ * not in the index are dropped, because their weight is zero. The<br/>
+ * weights of the terms and the norm of the query are computed once,<br/>
+ * so the similarity methods only look up the documents' weights.
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ */
+public class QueryVector {
+
+    private IndexReader reader;     // the index of the query
+    private String[] terms;         // the terms of the query that are in the index
+    private int[] counts;           // the number of times that every term is in the query
+    private int[] docFrequencies;   // the number of documents of every term
+    private double[] weights;       // the weight of every term
+    private double squaredNorm;     // the sum of the squared weights of the query's terms
+
+    /**
+     * Compiles a query.
+     * @param reader The index of the query.
+     * @param query Users query, with its terms separated by single spaces.
+     */
+    public QueryVector(IndexReader reader, String query) {
+        this.reader = reader;
+
+        //get terms frequency
+        LinkedHashMap<String,Integer> termFreqs = new LinkedHashMap<String,Integer>();
+        double maxFreq = 0.0;
+        for (String term : query.split(" ")) {
+            Integer count = termFreqs.get(term);
+            termFreqs.put(term, count = (count == null) ? 1 : count + 1);
+            maxFreq = Math.max(count, maxFreq);
+        }
+
+        ArrayList<String> found = new ArrayList<String>();
+        ArrayList<Integer> foundFrequencies = new ArrayList<Integer>();
+        for (String term : termFreqs.keySet()) {
+            int docFrequency = reader.getDocFrequency(term);
+            if (docFrequency == 0) continue;
+
+            found.add(term);
+            foundFrequencies.add(docFrequency);
+        }
+
+        int size = found.size();
+        terms = found.toArray(new String[size]);
+        counts = new int[size];
+        docFrequencies = new int[size];
+        weights = new double[size];
+        double totalDocNumber = reader.getDocCount();
+        for (int i = 0; i < size; i++) {
+            counts[i] = termFreqs.get(terms[i]);
+            docFrequencies[i] = foundFrequencies.get(i);
+            weights[i] = ( 0.5*(counts[i]/maxFreq)  + 0.5) * Math.log(totalDocNumber/docFrequencies[i]);
+            squaredNorm += counts[i]*Math.pow(weights[i], 2);
+        }
+    }
+
+    /**
+     * @return The number of different terms of the query that are in the index.
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    /**
+     * @param i The term's position.
+     * @return The term.
+     */
+    public String getTerm(int i) {
+        return terms[i];
+    }
+
+    /**
+     * @param i The term's position.
+     * @return The number of times that the term is in the query.
+     */
+    public int getCount(int i) {
+        return counts[i];
+    }
+
+    /**
+     * @param i The term's position.
+     * @return The number of documents that contain the term.
+     */
+    public int getDocFrequency(int i) {
+        return docFrequencies[i];
+    }
+
+    /**
+     * @param i The term's position.
+     * @return The term's weight in the query.
+     */
+    public double getWeight(int i) {
+        return weights[i];
+    }
+
+    /**
+     * Returns the weight of a term in the query.
+     * @param term The term.
+     * @return The term's weight, zero if it is not in the query or in the index.
+     */
+    public double getWeight(String term) {
+        for (int i = 0; i < terms.length; i++)
+            if (terms[i].equals(term)) return weights[i];
+
+        return 0;
+    }
+
+    /**
+     * @return The sum of the squared weights of the query's terms,<br/>
+     * a repeated term counted as many times as it is repeated.
+     */
+    public double getSquaredNorm() {
+        return squaredNorm;
+    }
+
+    /**
+     * @return The length of the query's vector.
+     */
+    public double getNorm() {
+        return Math.sqrt(squaredNorm);
+    }
+
+    /**
+     * @return The index of the query.
+     */
+    public IndexReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Opens the posting list of a term. An iterator walks the list once,<br/>
+     * so every walk opens the list again.
+     * @param i The term's position.
+     * @return An iterator over the term's posting list.
+     */
+    public PostingIterator getPostings(int i) {
+        return reader.getPostings(terms[i]);
+    }
+}
@@ -0,0 +1,184 @@
+package vm;
+
+import ixm.PostingIterator;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Scores the documents of a query term at a time.<br/>
+ * The posting list of every query's term is walked once and the weights<br/>
+ * of its documents are added to an accumulator of the document, so a<br/>
+ * document that shares no terms with the query costs nothing. The terms<br/>
+ * are walked in the order of the <code>QueryVector</code>, so the sums are the<br/>
+ * same as the ones of the similarity methods of <code>VectorModelManager</code>.
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ */
+public class TermAtATimeScorer {
+
+    private QueryVector query;          // the compiled query
+    private double missingDistance;     // the squared distance of a document without the query's terms
+    private HashMap<Integer,Accumulator> accumulators;  // the sums of the candidate documents by ID
+
+    /**
+     * Walks the posting lists of the query's terms.
+     * @param query The compiled query.
+     */
+    public TermAtATimeScorer(QueryVector query) {
+        this.query = query;
+        this.accumulators = new HashMap<Integer,Accumulator>();
+
+        for (int i = 0; i < query.size(); i++) {
+            missingDistance += query.getCount(i)*Math.pow(Math.abs(query.getWeight(i)), 2);
+
+            PostingIterator postings = query.getPostings(i);
+            if (postings == null) continue;
+
+            int docId;
+            while ((docId = postings.nextDoc()) != PostingIterator.NO_MORE_DOCS) {
+                Accumulator acc = accumulators.get(docId);
+                if (acc == null) accumulators.put(docId, acc = new Accumulator());
+                acc.add(i, postings.weight());
+            }
+        }
+    }
+
+    /**
+     * Returns the documents that contain at least one of the query's terms.
+     * @return The IDs of the candidate documents in ID order.
+     */
+    public int[] getCandidates() {
+        int[] candidates = new int[accumulators.size()];
+        int i = 0;
+        for (int docId : accumulators.keySet())
+            candidates[i++] = docId;
+        Arrays.sort(candidates);
+
+        return candidates;
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the method of Euclidean Distance.
+     * @param docId The document's ID.
+     * @return The query-document relevance as double number.
+     */
+    public double EuclideanDistance(int docId) {
+        Accumulator acc = accumulators.get(docId);
+        if (acc == null) return Math.sqrt(missingDistance);
+
+        return Math.sqrt(acc.distance(query.size()));
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the method of Inner Product.
+     * @param docId The document's ID.
+     * @return The query-document relevance as double number.
+     */
+    public double InnerProduct(int docId) {
+        Accumulator acc = accumulators.get(docId);
+        return (acc == null) ? 0 : acc.sum;
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * by calculating the Cosine of the angle between<br/>
+     * query's and document's vectors.
+     * @param docId The document's ID.
+     * @return The query-document relevance as double number.
+     */
+    public double Cosine(int docId) {
+        Accumulator acc = accumulators.get(docId);
+        if (acc == null) return 0;
+
+        double queryMeter = query.getNorm();
+        double docMeter = Math.sqrt(acc.docSum);
+
+        if (queryMeter != 0 && docMeter != 0)
+            return acc.sum/(queryMeter*docMeter);
+        else
+            return 0;
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the Dice method.
+     * @param docId The document's ID.
+     * @return The query-document relevance as double number.
+     */
+    public double Dice(int docId) {
+        Accumulator acc = accumulators.get(docId);
+        if (acc == null) return 0;
+
+        double Lq = query.getNorm();
+        double Ld = Math.sqrt(acc.docSum);
+
+        if (Ld != 0 && Lq != 0)
+            return ( 2/ ( (Math.pow(Ld, 2))+(Math.pow(Lq, 2)) ) ) * acc.sum;
+        else
+            return 0;
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the Jaccard method.
+     * @param docId The document's ID.
+     * @return The query-document relevance as double number.
+     */
+    public double Jaccard(int docId) {
+        Accumulator acc = accumulators.get(docId);
+        if (acc == null) return 0;
+
+        double Lq = query.getNorm();
+        double Ld = Math.sqrt(acc.docSum);
+
+        if (Ld != 0 && Lq != 0)
+            return acc.sum / ( (Math.pow(Ld, 2))+(Math.pow(Lq, 2)) - acc.sum);
+        else
+            return 0;
+    }
+
+    /**
+     * The sums of a candidate document.<br/>
+     * A term that is not in the document adds nothing to the sums,<br/>
+     * except to the distance, which adds the missing terms when it<br/>
+     * gets to the next term of the document.
+     */
+    private class Accumulator {
+        private double sum;         // the inner product with the query
+        private double docSum;      // the sum of the squared weights of the query's terms in the document
+        private double distance;    // the squared distance up to the next term
+        private int next;           // the position of the next term of the distance
+
+        /**
+         * Adds the weight of a query's term in the document.
+         * @param position The term's position in the query.
+         * @param weight The term's weight in the document.
+         */
+        void add(int position, double weight) {
+            int count = query.getCount(position);
+            sum += count*query.getWeight(position)*weight;
+            docSum += count*Math.pow(weight, 2);
+
+            distance = this.distance(position);
+            distance += count*Math.pow(Math.abs(query.getWeight(position) - weight), 2);
+            next = position + 1;
+        }
+
+        /**
+         * Returns the squared distance with the terms that the document<br/>
+         * does not contain, up to a position.
+         * @param position The position after the last term.
+         * @return The squared distance.
+         */
+        double distance(int position) {
+            double result = distance;
+            for (int i = next; i < position; i++)
+                result += query.getCount(i)*Math.pow(Math.abs(query.getWeight(i)), 2);
+
+            return result;
+        }
+    }
+}
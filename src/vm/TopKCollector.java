@@ -0,0 +1,146 @@
+package vm;
+
+/**
+ * Keeps the k best documents of a query while the documents are scored.<br/>
+ * The documents are kept in a binary heap of size k, whose top is the<br/>
+ * worst of the kept documents, so a document is added in O(log k) and<br/>
+ * the scored documents are never all kept. The best documents have the<br/>
+ * lowest rank in ascending order (the Euclidean distance) and the highest<br/>
+ * rank in descending order (the similarities). Of two documents with the<br/>
+ * same rank, the one with the lowest ID is better.
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ */
+public class TopKCollector {
+
+    private boolean ascending;  // shows if the lowest ranks are the best
+    private int[] docIds;       // the heap's document IDs, the worst document first
+    private double[] ranks;     // the heap's ranks
+    private int size;           // the number of documents in the heap
+
+    /**
+     * Initializes an empty collector.
+     * @param k The number of documents to keep.
+     * @param ascending Shows if the lowest ranks are the best.
+     */
+    public TopKCollector(int k, boolean ascending) {
+        this.ascending = ascending;
+        this.docIds = new int[Math.max(k, 0)];
+        this.ranks = new double[Math.max(k, 0)];
+    }
+
+    /**
+     * Offers a scored document to the collector.
+     * @param docId The document's ID.
+     * @param rank The document's rank.
+     * @return True if the document is kept.
+     */
+    public boolean collect(int docId, double rank) {
+        if (size < docIds.length) {
+            docIds[size] = docId;
+            ranks[size] = rank;
+            this.siftUp(size++);
+            return true;
+        }
+        if (size == 0 || !this.isBetter(rank, docId, ranks[0], docIds[0])) return false;
+
+        docIds[0] = docId;
+        ranks[0] = rank;
+        this.siftDown(0);
+        return true;
+    }
+
+    /**
+     * @return True if the collector keeps k documents.
+     */
+    public boolean isFull() {
+        return size == docIds.length;
+    }
+
+    /**
+     * Returns the rank that a document must beat to be kept,<br/>
+     * when the collector is full.
+     * @return The rank of the worst kept document.
+     */
+    public double getThreshold() {
+        return ranks[0];
+    }
+
+    /**
+     * @return The number of kept documents.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the kept documents, the best first. The collector is<br/>
+     * empty afterwards.
+     * @return The IDs of the kept documents.
+     */
+    public int[] getDocIds() {
+        int[] result = new int[size];
+        // the worst document is taken from the top of the heap, until the heap is empty
+        while (size > 0) {
+            result[size - 1] = docIds[0];
+            size--;
+            docIds[0] = docIds[size];
+            ranks[0] = ranks[size];
+            this.siftDown(0);
+        }
+
+        return result;
+    }
+
+    /**
+     * Compares two documents.
+     * @return True if the first document is better than the second.
+     */
+    private boolean isBetter(double rank1, int docId1, double rank2, int docId2) {
+        if (rank1 != rank2) return ascending ? rank1 < rank2 : rank1 > rank2;
+
+        return docId1 < docId2;
+    }
+
+    /**
+     * Moves a document up the heap, while it is worse than its parent.
+     * @param i The document's position.
+     */
+    private void siftUp(int i) {
+        int docId = docIds[i];
+        double rank = ranks[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!this.isBetter(ranks[parent], docIds[parent], rank, docId)) break;
+
+            docIds[i] = docIds[parent];
+            ranks[i] = ranks[parent];
+            i = parent;
+        }
+        docIds[i] = docId;
+        ranks[i] = rank;
+    }
+
+    /**
+     * Moves a document down the heap, while one of its children is worse.
+     * @param i The document's position.
+     */
+    private void siftDown(int i) {
+        int docId = docIds[i];
+        double rank = ranks[i];
+        while (true) {
+            int child = 2*i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && this.isBetter(ranks[child], docIds[child], ranks[child + 1], docIds[child + 1]))
+                child++;
+            if (!this.isBetter(rank, docId, ranks[child], docIds[child])) break;
+
+            docIds[i] = docIds[child];
+            ranks[i] = ranks[child];
+            i = child;
+        }
+        docIds[i] = docId;
+        ranks[i] = rank;
+    }
+}
@@ -1,9 +1,10 @@
 package vm;
 
-import ixm.Index;
 import ixm.IndexHandle;
+import ixm.IndexReader;
+import ixm.PostingIterator;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
 /**
  * This class is responsible for executing user's queries.</ br>
@@ -14,7 +15,8 @@ import java.util.HashMap;
  */
 public class VectorModelManager {
 
-    private String method;
+    private static final double RELEVANCE_THRESHOLD = 0.3;  // the relevance of the inner product and the cosine results
+
     private IndexHandle iHandle;
 
     /**
@@ -33,54 +35,49 @@ public class VectorModelManager {
      * @return  An <code>ArrayList</code> containing the results of the query.
      */
     public ArrayList<String> excecuteQuery(String query, String method){
+        // the index does not change while the query runs
+        iHandle.BeginRead();
+        try {
+            return this.rankDocuments(query, method);
+        } finally {
+            iHandle.EndRead();
+        }
+    }
 
-        // keep only letters and numbers
-        query = query.replaceAll("[^A-Za-z0-9$]", " ");
-        query = query.replaceAll(" {2,}", " ").trim();
+    /**
+     * Ranks the documents for the query, while the index does not change.
+     *
+     * @param query The query to be excecuted.
+     * @param method  The relevance method to be used.
+     * @return  An <code>ArrayList</code> containing the results of the query.
+     */
+    private ArrayList<String> rankDocuments(String query, String method){
+
+        query = this.clean(query);
 
         // if the query is empty return null value
         if (query.equals("")) return null;
 
-        this.method = method;
         double mark = 0;
+
         ArrayList<DocumentRank> rank = new ArrayList();
 
-        //for all docs in the diractory
-         ArrayList<String> allDocsList = iHandle.getIndex().getDocNames();
-        //we call one of the 3 functions
-         
-         if(method.equals("euclidean")){
-             for (String doc : allDocsList){
-                 mark = this.EuclideanDistance(doc, query);
-                 rank.add(new DocumentRank(doc, mark));
-             }
-         } else if(method.equals("inner product")){
-             for (String doc : allDocsList){
-                 mark = this.InnerProduct(doc, query);
-                 if (mark > 0.3) rank.add(new DocumentRank(doc, mark));
-             }
-         } else if (method.equals("cosine")) {
-             for (String doc : allDocsList){
-                 mark = this.Cosine(doc, query);
-                 if (mark >= 0.3) rank.add(new DocumentRank(doc, mark));
-             }
-         } else if (method.equals("dice")) {
-             for (String doc : allDocsList){
-                 mark = this.Dice(doc, query);
-                 if (mark > 0) rank.add(new DocumentRank(doc, mark));
-             }
-         } else {
-             for (String doc : allDocsList){
-                 mark = this.Jaccard(doc, query);
-                 if (mark > 0) rank.add(new DocumentRank(doc, mark));
-             }
+        // the query is compiled once and its posting lists are walked term at a time
+        IndexReader reader = iHandle.getReader();
+        TermAtATimeScorer scorer = new TermAtATimeScorer(new QueryVector(reader, query));
+
+        //for all docs in the diractory, or for the docs with a query's term
+        //when a doc without them cannot pass the method's threshold
+         for (int docId : this.getScoredDocs(reader, scorer, method)){
+             mark = this.getScore(scorer, docId, method);
+             if (this.isRelevant(mark, method)) rank.add(new DocumentRank(reader.getDocName(docId), mark));
          }
 
          // in case there are no results return an empty list
          if (rank.size() == 0)
              return new ArrayList();
 
-         rank = quickSort(rank,0,rank.size()-1);
+         rank = quickSort(rank,0,rank.size()-1,method.equals("euclidean"));
          ArrayList<String> sortedResult = new ArrayList();
          for (int i = 0; i < rank.size(); i++)
              sortedResult.add(rank.get(i).getName());
@@ -89,27 +86,131 @@ public class VectorModelManager {
     }
 
     /**
-     * Returns the k most relevant to the query documents.
+     * Returns the k most relevant to the query documents.<br/>
+     * The documents are kept in a <code>TopKCollector</code> while they are<br/>
+     * scored, so the results are not all kept and sorted. Of two documents<br/>
+     * with the same relevance, the one that was indexed first comes first.<br/>
+     * The inner product is ranked by a <code>BlockMaxWandEvaluator</code> and the<br/>
+     * cosine by a <code>WandEvaluator</code>, which skip the documents that cannot<br/>
+     * beat the worst of the k best.
      * @param query The query to be excecuted.
      * @param method  The relevance method to be used.
      * @param k  The number of most relevant documents the user wants to get.
      * @return An <code>ArrayList</code> containing thek most relative results of the query.
      */
     public ArrayList<String> getTopK(String query, String method, int k){
-        ArrayList<String> sortedResult = this.excecuteQuery(query, method);
+        // the index does not change while the query runs
+        iHandle.BeginRead();
+        try {
+            return this.selectTopK(query, method, k);
+        } finally {
+            iHandle.EndRead();
+        }
+    }
+
+    /**
+     * Selects the k most relevant documents, while the index does not change.
+     * @param query The query to be excecuted.
+     * @param method  The relevance method to be used.
+     * @param k  The number of most relevant documents the user wants to get.
+     * @return An <code>ArrayList</code> containing thek most relative results of the query.
+     */
+    private ArrayList<String> selectTopK(String query, String method, int k){
         ArrayList<String> result = new ArrayList();
 
-        for (int i = 0; i < k; i++) {
-            try {
-                result.add(sortedResult.get(i));
-            } catch (Exception ex) {
-                return result;
+        query = this.clean(query);
+        if (query.equals("") || k <= 0) return result;
+
+        IndexReader reader = iHandle.getReader();
+        QueryVector queryVector = new QueryVector(reader, query);
+        TopKCollector topK = new TopKCollector(k, method.equals("euclidean"));
+
+        if (method.equals("inner product") || method.equals("cosine")) {
+            // the documents that cannot beat the worst of the k best are skipped
+            WandEvaluator wand = method.equals("cosine")
+                    ? new WandEvaluator(queryVector, true, RELEVANCE_THRESHOLD)
+                    : new BlockMaxWandEvaluator(queryVector, RELEVANCE_THRESHOLD);
+            int docId;
+            while ((docId = wand.nextDoc()) != PostingIterator.NO_MORE_DOCS) {
+                double mark = wand.score();
+                if (this.isRelevant(mark, method) && topK.collect(docId, mark) && topK.isFull())
+                    wand.setThreshold(topK.getThreshold());
+            }
+        } else {
+            TermAtATimeScorer scorer = new TermAtATimeScorer(queryVector);
+            for (int docId : this.getScoredDocs(reader, scorer, method)){
+                double mark = this.getScore(scorer, docId, method);
+                if (this.isRelevant(mark, method)) topK.collect(docId, mark);
             }
         }
 
+        for (int docId : topK.getDocIds())
+            result.add(reader.getDocName(docId));
+
         return result;
     }
 
+    /**
+     * Keeps only the letters and numbers of a query.
+     * @param query Users query.
+     * @return The query's terms, separated by single spaces.
+     */
+    private String clean(String query) {
+        query = query.replaceAll("[^A-Za-z0-9$]", " ");
+        return query.replaceAll(" {2,}", " ").trim();
+    }
+
+    /**
+     * Returns the documents that are scored for a method: all the documents<br/>
+     * for the Euclidean distance, or else the documents with a query's term,<br/>
+     * because a document without them cannot pass the method's threshold.
+     * @param reader The index of the query.
+     * @param scorer The query's scorer.
+     * @param method The relevance method.
+     * @return The IDs of the documents.
+     */
+    private int[] getScoredDocs(IndexReader reader, TermAtATimeScorer scorer, String method) {
+        if (!method.equals("euclidean")) return scorer.getCandidates();
+
+        // the documents are found by their IDs, without their names
+        int[] docIds = new int[reader.getMaxDocId()];
+        int count = 0;
+        for (int docId = 0; docId < docIds.length; docId++)
+            if (reader.containsDoc(docId)) docIds[count++] = docId;
+
+        return Arrays.copyOf(docIds, count);
+    }
+
+    /**
+     * Calculates the query-document relevance with a method.
+     * @param scorer The query's scorer.
+     * @param docId The document's ID.
+     * @param method The relevance method.
+     * @return The query-document relevance as double number.
+     */
+    private double getScore(TermAtATimeScorer scorer, int docId, String method) {
+        if (method.equals("euclidean")) return scorer.EuclideanDistance(docId);
+        if (method.equals("inner product")) return scorer.InnerProduct(docId);
+        if (method.equals("cosine")) return scorer.Cosine(docId);
+        if (method.equals("dice")) return scorer.Dice(docId);
+
+        return scorer.Jaccard(docId);
+    }
+
+    /**
+     * Checks if a relevance passes the method's threshold.
+     * @param mark The query-document relevance.
+     * @param method The relevance method.
+     * @return True if the document is a result.
+     */
+    private boolean isRelevant(double mark, String method) {
+        if (method.equals("euclidean")) return true;
+        if (method.equals("inner product")) return mark > RELEVANCE_THRESHOLD;
+        if (method.equals("cosine")) return mark >= RELEVANCE_THRESHOLD;
+
+        return mark > 0;
+    }
+
     /**
      * Calculates the query-document relevance<br/>
      * using the method of Euclidean Distance.
@@ -118,19 +219,34 @@ public class VectorModelManager {
      * @return The query-document relevance as double number.
      */
     public double EuclideanDistance(String document, String query) {
+        IndexReader reader = iHandle.BeginRead();
+        try {
+            return this.EuclideanDistance(document, new QueryVector(reader, query));
+        } finally {
+            iHandle.EndRead();
+        }
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the method of Euclidean Distance.
+     * @param document The document to whitch we want to find relevance with the query.
+     * @param query The compiled query.
+     * @return The query-document relevance as double number.
+     */
+    public double EuclideanDistance(String document, QueryVector query) {
 
         double queryTermWeight = 0, docTermWeight = 0;
         double sum = 0, dist = 0;
 
-        String[] queryWords = query.split(" ");
-        for(String term : queryWords){
-            queryTermWeight = this.getQueryTermWeight(term, query);
-            docTermWeight = this.getWordsWeight(term, document);
+        for(int i = 0; i < query.size(); i++){
+            queryTermWeight = query.getWeight(i);
+            docTermWeight = this.getWordsWeight(query.getTerm(i), document);
 
             double diff = queryTermWeight - docTermWeight;
             double absDiff = Math.abs(diff);
             double powerAbsDiff = Math.pow(absDiff, 2);
-            sum += powerAbsDiff;
+            sum += query.getCount(i)*powerAbsDiff;
         }
 
         dist = Math.sqrt(sum);
@@ -146,16 +262,31 @@ public class VectorModelManager {
      * @return The query-document relevance as double number.
      */
     public double InnerProduct(String document, String query) {
+        IndexReader reader = iHandle.BeginRead();
+        try {
+            return this.InnerProduct(document, new QueryVector(reader, query));
+        } finally {
+            iHandle.EndRead();
+        }
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the method of Inner Product.
+     * @param document The document to whitch we want to find relevance with the query.
+     * @param query The compiled query.
+     * @return The query-document relevance as double number.
+     */
+    public double InnerProduct(String document, QueryVector query) {
 
         double sum = 0;
         double queryTermWeight = 0, docTermWeight = 0;
 
-        String[] queryWords = query.split(" ");
-        for(String term : queryWords){
-            queryTermWeight = this.getQueryTermWeight(term, query);
-            docTermWeight = this.getWordsWeight(term, document);
+        for(int i = 0; i < query.size(); i++){
+            queryTermWeight = query.getWeight(i);
+            docTermWeight = this.getWordsWeight(query.getTerm(i), document);
 
-            sum += queryTermWeight*docTermWeight;
+            sum += query.getCount(i)*queryTermWeight*docTermWeight;
         }
 
         return sum;
@@ -170,24 +301,38 @@ public class VectorModelManager {
      * @return The query-document relevance as double number.
      */
     public double Cosine(String document, String query) {
+        IndexReader reader = iHandle.BeginRead();
+        try {
+            return this.Cosine(document, new QueryVector(reader, query));
+        } finally {
+            iHandle.EndRead();
+        }
+    }
+
+    /**
+     * Calculates the query-document relevance<br/>
+     * by calculating the Cosine of the angle between<br/>
+     * query's and document's vectors.
+     * @param document The document to whitch we want to find relevance with the query.
+     * @param query The compiled query.
+     * @return The query-document relevance as double number.
+     */
+    public double Cosine(String document, QueryVector query) {
 
         double sum = 0;
         double queryMeter=0, docMeter=0;
-        double querySum = 0, docSum=0;
+        double docSum=0;
         double queryTermWeight = 0, docTermWeight = 0;
 
-        String[] queryWords = query.split(" ");
-        
-        for(String term : queryWords){
-            queryTermWeight = this.getQueryTermWeight(term, query);
-            docTermWeight = this.getWordsWeight(term, document);
+        for(int i = 0; i < query.size(); i++){
+            queryTermWeight = query.getWeight(i);
+            docTermWeight = this.getWordsWeight(query.getTerm(i), document);
             
-            sum += queryTermWeight*docTermWeight;
-            querySum += Math.pow(queryTermWeight, 2);
-            docSum += Math.pow(docTermWeight, 2);
+            sum += query.getCount(i)*queryTermWeight*docTermWeight;
+            docSum += query.getCount(i)*Math.pow(docTermWeight, 2);
         }
 
-        queryMeter = Math.sqrt(querySum);
+        queryMeter = query.getNorm();
         docMeter = Math.sqrt(docSum);
 
         double cosine;
@@ -207,24 +352,28 @@ public class VectorModelManager {
      * @return The query-document relevance as double number.
      */
     public double Dice(String document, String query){
+        IndexReader reader = iHandle.BeginRead();
+        try {
+            return this.Dice(document, new QueryVector(reader, query));
+        } finally {
+            iHandle.EndRead();
+        }
+    }
 
-        double sum = this.InnerProduct(document, query);
-
-        double queryTermWeight = 0, docTermWeight = 0;
-        double Ld = 0;
-        double Lq = 0;
-
-        String[] queryWords = query.split(" ");
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the Dice method.
+     * @param document The document to whitch we want to find relevance with the query.
+     * @param query The compiled query.
+     * @return The query-document relevance as double number.
+     */
+    public double Dice(String document, QueryVector query){
 
-        for(String term : queryWords){
-            queryTermWeight = this.getQueryTermWeight(term, query);
-            docTermWeight = this.getWordsWeight(term, document);
+        double sum = this.InnerProduct(document, query);
 
-            Ld += Math.pow(docTermWeight, 2);
-            Lq += Math.pow(queryTermWeight, 2);
-        }
+        double Ld = this.getSquaredLength(document, query);
+        double Lq = query.getNorm();
 
-        Lq = Math.sqrt(Lq);
         Ld = Math.sqrt(Ld);
 
         double diceResult;
@@ -244,24 +393,28 @@ public class VectorModelManager {
      * @return The query-document relevance as double number.
      */
     public double Jaccard(String document, String query){
+        IndexReader reader = iHandle.BeginRead();
+        try {
+            return this.Jaccard(document, new QueryVector(reader, query));
+        } finally {
+            iHandle.EndRead();
+        }
+    }
 
-        double sum = this.InnerProduct(document, query);
-
-        double queryTermWeight = 0, docTermWeight = 0;
-        double Ld = 0;
-        double Lq = 0;
-
-        String[] queryWords = query.split(" ");
+    /**
+     * Calculates the query-document relevance<br/>
+     * using the Jaccard method.
+     * @param document The document to whitch we want to find relevance with the query.
+     * @param query The compiled query.
+     * @return The query-document relevance as double number.
+     */
+    public double Jaccard(String document, QueryVector query){
 
-        for(String term : queryWords){
-            queryTermWeight = this.getQueryTermWeight(term, query);
-            docTermWeight = this.getWordsWeight(term, document);
+        double sum = this.InnerProduct(document, query);
 
-            Ld += Math.pow(docTermWeight, 2);
-            Lq += Math.pow(queryTermWeight, 2);
-        }
+        double Ld = this.getSquaredLength(document, query);
+        double Lq = query.getNorm();
 
-        Lq = Math.sqrt(Lq);
         Ld = Math.sqrt(Ld);
 
         double jacResult;
@@ -273,6 +426,21 @@ public class VectorModelManager {
         return jacResult;
     }
 
+    /**
+     * Calculates the sum of the squared weights<br/>
+     * of the query's terms in a document.
+     * @param document The document.
+     * @param query The compiled query.
+     * @return The sum, a repeated term counted as many times as it is repeated.
+     */
+    private double getSquaredLength(String document, QueryVector query) {
+        double Ld = 0;
+        for(int i = 0; i < query.size(); i++)
+            Ld += query.getCount(i)*Math.pow(this.getWordsWeight(query.getTerm(i), document), 2);
+
+        return Ld;
+    }
+
     /**
      * Get the weight of the word<br />
      * for a specific document
@@ -281,11 +449,11 @@ public class VectorModelManager {
      * @return The words weight.
      */
     public double getWordsWeight(String word, String document) {
+        IndexReader reader = iHandle.BeginRead();
         try {
-            int docIndex = iHandle.getIndex().get(word).indexOf(document);
-            return iHandle.getIndex().get(word).get(docIndex).GetWeight();
-        } catch(Exception ex) {
-            return 0;
+            return reader.getWeight(word, reader.getDocId(document));
+        } finally {
+            iHandle.EndRead();
         }
     }
 
@@ -296,26 +464,12 @@ public class VectorModelManager {
      * @return Terms weight as a double number.
      */
     public double getQueryTermWeight(String term, String query){
-
-        HashMap<String,Double> termFreqs = new HashMap();
-        Index index = iHandle.getIndex();
-        double weight = 0.0, maxFreq = 0.0;
-
-        //get terms frequency
-        for(String currTerm : query.split(" ")) {
-            if (termFreqs.get(currTerm) == null)
-                termFreqs.put(currTerm, 0.0);
-            termFreqs.put(currTerm, termFreqs.get(currTerm) + 1.0);
-            maxFreq = Math.max(termFreqs.get(currTerm),maxFreq);
+        IndexReader reader = iHandle.BeginRead();
+        try {
+            return new QueryVector(reader, query).getWeight(term);
+        } finally {
+            iHandle.EndRead();
         }
-
-        double totalDocNumber = index.getDocNames().size();
-        if (index.get(term) != null)
-            weight = ( 0.5*(termFreqs.get(term)/maxFreq)  + 0.5) * Math.log(totalDocNumber/index.get(term).size());
-        else
-            weight = 0;
-
-        return weight;
     }
 
     /**
@@ -323,9 +477,10 @@ public class VectorModelManager {
      * @param arr
      * @param left
      * @param right
+     * @param ascending Shows if the lowest ranks are the best.
      * @return
      */
-    private int partition(ArrayList<DocumentRank> arr, int left, int right){
+    private int partition(ArrayList<DocumentRank> arr, int left, int right, boolean ascending){
 
     int i = left, j = right;
     DocumentRank tmp;
@@ -333,7 +488,7 @@ public class VectorModelManager {
 
 
     while (i <= j) {
-        if (method.equals("euclidean")) {
+        if (ascending) {
             while (arr.get(i).getRank() < pivot.getRank()) i++;
             while (arr.get(j).getRank() > pivot.getRank()) j--;
         } else {
@@ -359,15 +514,16 @@ public class VectorModelManager {
      * @param arr
      * @param left
      * @param right
+     * @param ascending Shows if the lowest ranks are the best, like the Euclidean distance.
      * @return An ArrayList containing the documents in asccending ranking order .
      */
-    private ArrayList<DocumentRank> quickSort(ArrayList<DocumentRank> arr, int left, int right) {
+    private ArrayList<DocumentRank> quickSort(ArrayList<DocumentRank> arr, int left, int right, boolean ascending) {
 
-        int index = partition(arr, left, right);
+        int index = partition(arr, left, right, ascending);
         if (left < index - 1)
-            quickSort(arr, left, index - 1);
+            quickSort(arr, left, index - 1, ascending);
         if (index < right)
-            quickSort(arr, index, right);
+            quickSort(arr, index, right, ascending);
 
         return arr;
     }
@@ -0,0 +1,190 @@
+package vm;
+
+import ixm.PostingIterator;
+
+/**
+ * Walks the documents of a query document at a time and skips the documents<br/>
+ * that cannot pass a threshold (WAND).<br/>
+ * The posting lists of the query's terms are kept in the order of their<br/>
+ * current documents. The bounds of the lists are added in this order, until<br/>
+ * they pass the threshold, and the document of the last added list is the<br/>
+ * pivot: a document before it contains only lists whose bounds together<br/>
+ * cannot pass the threshold, so the lists before the pivot jump to it.<br/>
+ * The bound of a list for the inner product is the weight of the term in<br/>
+ * the query times the max weight of the list. The cosine is normalized by<br/>
+ * the weights of the query's terms in the document, so it is bounded by the<br/>
+ * length of the query's part that the document contains, divided by the<br/>
+ * length of the query.<br/>
+ * The scores are summed in the order of the <code>QueryVector</code>, so they are<br/>
+ * the same as the ones of <code>TermAtATimeScorer</code>.
+ *
+ * @author Evripidis Gkanias
+ * @author Stergios Giannouloudis
+ */
+public class WandEvaluator {
+
+    protected static final double SLACK = 1e-9; // the relative rounding error that a bound may have
+
+    protected QueryVector query;            // the compiled query
+    protected boolean cosine;               // shows if the documents are ranked with the cosine, or else the inner product
+    protected double threshold;             // the score that a document must reach to be scored
+    protected PostingIterator[] postings;   // the posting lists of the query's terms, by term position
+    protected double[] bounds;              // the part of every term in a document's bound
+    protected int[] order;                  // the term positions in the order of their current documents
+    protected int docId = -1;               // the current document's ID
+
+    /**
+     * Opens the posting lists of the query's terms.
+     * @param query The compiled query.
+     * @param cosine Shows if the documents are ranked with the cosine, or else the inner product.
+     * @param threshold The score that a document must reach to be scored.
+     */
+    public WandEvaluator(QueryVector query, boolean cosine, double threshold) {
+        this.query = query;
+        this.cosine = cosine;
+        this.threshold = threshold;
+
+        int size = query.size();
+        postings = new PostingIterator[size];
+        bounds = new double[size];
+        order = new int[size];
+        for (int i = 0; i < size; i++) {
+            postings[i] = query.getPostings(i);
+            postings[i].nextDoc();
+            bounds[i] = cosine
+                    ? query.getCount(i)*Math.pow(query.getWeight(i), 2)
+                    : query.getCount(i)*query.getWeight(i)*postings[i].maxWeight();
+            order[i] = i;
+        }
+    }
+
+    /**
+     * Raises the score that a document must reach to be scored,<br/>
+     * e.g. to the rank of the worst of the k best documents.
+     * @param threshold The new threshold.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = Math.max(this.threshold, threshold);
+    }
+
+    /**
+     * Moves to the next document that may reach the threshold.
+     * @return The document's ID or <code>PostingIterator.NO_MORE_DOCS</code>.
+     */
+    public int nextDoc() {
+        if (docId == PostingIterator.NO_MORE_DOCS) return docId;
+        this.moveLists();
+
+        while (true) {
+            this.sortLists();
+
+            int pivot = this.findPivot();
+            if (pivot < 0) return docId = PostingIterator.NO_MORE_DOCS;
+
+            int pivotDoc = postings[order[pivot]].docId();
+            if (postings[order[0]].docId() == pivotDoc) return docId = pivotDoc;
+
+            // the documents before the pivot cannot reach the threshold
+            for (int j = 0; j < pivot; j++)
+                postings[order[j]].advance(pivotDoc);
+        }
+    }
+
+    /**
+     * @return The current document's ID.
+     */
+    public int docId() {
+        return docId;
+    }
+
+    /**
+     * Calculates the query-document relevance of the current document,<br/>
+     * using the method of the evaluator.
+     * @return The query-document relevance as double number.
+     */
+    public double score() {
+        double sum = 0;
+        double docSum = 0;
+        for (int i = 0; i < postings.length; i++) {
+            if (postings[i].docId() != docId) continue;
+
+            double weight = postings[i].weight();
+            int count = query.getCount(i);
+            sum += count*query.getWeight(i)*weight;
+            docSum += count*Math.pow(weight, 2);
+        }
+        if (!cosine) return sum;
+
+        double queryMeter = query.getNorm();
+        double docMeter = Math.sqrt(docSum);
+
+        if (queryMeter != 0 && docMeter != 0)
+            return sum/(queryMeter*docMeter);
+        else
+            return 0;
+    }
+
+    /**
+     * Moves the lists of the current document to their next documents.
+     */
+    protected void moveLists() {
+        for (int i = 0; i < postings.length; i++)
+            if (postings[i].docId() == docId) postings[i].nextDoc();
+    }
+
+    /**
+     * Finds the pivot, the first list in the sorted order whose bound<br/>
+     * with the lists before it reaches the threshold.
+     * @return The pivot's position in the sorted order, -1 if there is no pivot.
+     */
+    protected int findPivot() {
+        double sum = 0;
+        for (int j = 0; j < order.length; j++) {
+            if (postings[order[j]].docId() == PostingIterator.NO_MORE_DOCS) break;
+
+            sum += bounds[order[j]];
+            if (this.reaches(sum)) return j;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Checks if the documents that contain only some lists may reach the<br/>
+     * threshold. A bound is trusted only up to its rounding error.
+     * @param sum The sum of the parts of the lists.
+     * @return True if the bound reaches the threshold.
+     */
+    protected boolean reaches(double sum) {
+        return this.bound(sum)*(1 + SLACK) >= threshold;
+    }
+
+    /**
+     * Returns the bound of the documents that contain only some lists.
+     * @param sum The sum of the parts of the lists.
+     * @return The upper bound of the documents' scores.
+     */
+    protected double bound(double sum) {
+        if (!cosine) return sum;
+
+        double queryMeter = query.getNorm();
+        return (queryMeter != 0) ? Math.sqrt(sum)/queryMeter : 0;
+    }
+
+    /**
+     * Sorts the term positions by the current documents of their lists.<br/>
+     * Only a few lists move between two sorts, so insertion sort is used.
+     */
+    protected void sortLists() {
+        for (int j = 1; j < order.length; j++) {
+            int position = order[j];
+            int current = postings[position].docId();
+            int k = j - 1;
+            while (k >= 0 && postings[order[k]].docId() > current) {
+                order[k + 1] = order[k];
+                k--;
+            }
+            order[k + 1] = position;
+        }
+    }
+}